@@ -0,0 +1,42 @@
+package com.stage.concessionario.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.stage.concessionario.service.ContatoriModificheService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * GET condizionali per le API di lettura: l'ETag deriva dai contatori di modifica delle tabelle
+ * da cui dipende la risposta, quindi una richiesta con If-None-Match ancora valido riceve 304
+ * dopo la sola lettura dei contatori, senza che il controller esegua query o serializzi il corpo.
+ * "no-cache" fa sì che il browser conservi la risposta ma la riconvalidi a ogni richiesta.
+ */
+public class ETagInterceptor implements HandlerInterceptor {
+
+    private final ContatoriModificheService contatoriModifiche;
+    private final ContatoriModificheService.Tabella[] tabelle;
+
+    public ETagInterceptor(ContatoriModificheService contatoriModifiche, ContatoriModificheService.Tabella... tabelle) {
+        this.contatoriModifiche = contatoriModifiche;
+        this.tabelle = tabelle;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, private");
+        String etag = contatoriModifiche.etag(tabelle);
+        if (etag == null) {
+            // Contatori non leggibili: la risposta viene generata senza ETag
+            return true;
+        }
+        // Imposta l'header ETag e, se il client ha già questa versione, la risposta 304
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+}
@@ -0,0 +1,64 @@
+package com.stage.concessionario.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.stage.concessionario.model.GeneratoriId;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Allinea i segmenti della tabella generatore_id agli ID già presenti (ad esempio quelli
+ * assegnati dall'AUTO_INCREMENT prima dell'introduzione dei generatori a tabella).
+ * Viene eseguito durante l'avvio del contesto, dopo l'aggiornamento dello schema e prima
+ * che il server accetti richieste; più nodi avviati insieme ottengono lo stesso risultato.
+ */
+@Component
+public class GeneratoriIdInitializer implements InitializingBean {
+
+    private final JdbcTemplate jdbcTemplate;
+    private static final Logger logger = LogManager.getLogger(GeneratoriIdInitializer.class);
+
+    // L'EntityManagerFactory è richiesta solo perché lo schema (tabella dei generatori compresa) sia già stato creato
+    public GeneratoriIdInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        allinea(GeneratoriId.MOVIMENTO, "movimento", "id_movimento");
+        allinea(GeneratoriId.CONFIGURAZIONE, "configurazione", "id_configurazione");
+    }
+
+    private void allinea(String segmento, String tabella, String colonnaId) {
+        // Hibernate memorizza l'ultimo valore riservato: il prossimo blocco parte dal successivo
+        Long ultimo = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(" + colonnaId + "), 0) FROM " + tabella, Long.class);
+
+        int aggiornate = jdbcTemplate.update("UPDATE " + GeneratoriId.TABELLA + " SET " + GeneratoriId.COLONNA_VALORE
+                + " = ? WHERE " + GeneratoriId.COLONNA_NOME + " = ? AND " + GeneratoriId.COLONNA_VALORE + " < ?",
+                ultimo, segmento, ultimo);
+        if (aggiornate > 0) {
+            logger.info("Generatore {} riallineato: prossimo ID {}", segmento, ultimo + 1);
+            return;
+        }
+
+        Integer presenti = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + GeneratoriId.TABELLA
+                + " WHERE " + GeneratoriId.COLONNA_NOME + " = ?", Integer.class, segmento);
+        if (presenti != null && presenti > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO " + GeneratoriId.TABELLA + " (" + GeneratoriId.COLONNA_NOME + ", "
+                    + GeneratoriId.COLONNA_VALORE + ") VALUES (?, ?)", segmento, ultimo);
+            logger.info("Generatore {} inizializzato: prossimo ID {}", segmento, ultimo + 1);
+        } catch (DuplicateKeyException e) {
+            // Un altro nodo ha inserito il segmento nel frattempo
+            allinea(segmento, tabella, colonnaId);
+        }
+    }
+}
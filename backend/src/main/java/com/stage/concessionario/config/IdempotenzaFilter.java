@@ -0,0 +1,205 @@
+package com.stage.concessionario.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.stage.concessionario.model.RispostaIdempotente;
+import com.stage.concessionario.service.IdempotenzaService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Rende idempotenti le creazioni di movimenti e veicoli quando il client invia l'header
+ * Idempotency-Key: la prima risposta viene memorizzata e ripetuta alle richieste successive
+ * con la stessa chiave senza eseguire di nuovo controller e service. Un duplicato che arriva
+ * mentre la prima richiesta è in corso ne attende l'esito.
+ * Le richieste senza header non sono toccate. Le risposte 5xx non sono memorizzate, così il
+ * client può riprovare con la stessa chiave; lo stesso vale per 401, 403 e 429, che dipendono
+ * dalle credenziali o dal carico e non dalla richiesta.
+ */
+public class IdempotenzaFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String HEADER_RIPETUTA = "Idempotent-Replayed";
+
+    private static final int MAX_LUNGHEZZA_CHIAVE = 255;
+    // Il corpo è tenuto in memoria per calcolarne l'impronta: il limite copre un lotto completo
+    // di movimenti (movimenti.batch.max-movimenti), oltre si risponde 413 senza leggerlo tutto
+    private static final int MAX_CORPO_RICHIESTA = 4 * 1024 * 1024;
+    private static final Set<String> PERCORSI = Set.of("/api/movimenti", "/api/movimenti/batch", "/api/veicoli");
+
+    private final IdempotenzaService idempotenzaService;
+
+    public IdempotenzaFilter(IdempotenzaService idempotenzaService) {
+        this.idempotenzaService = idempotenzaService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("POST".equals(request.getMethod())
+                && request.getHeader(HEADER) != null
+                && PERCORSI.contains(request.getRequestURI().substring(request.getContextPath().length())));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String chiaveClient = request.getHeader(HEADER);
+        if (chiaveClient.isBlank() || chiaveClient.length() > MAX_LUNGHEZZA_CHIAVE) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Idempotency-Key non valida");
+            return;
+        }
+
+        if (request.getContentLengthLong() > MAX_CORPO_RICHIESTA) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Corpo della richiesta troppo grande");
+            return;
+        }
+        byte[] corpo = request.getInputStream().readNBytes(MAX_CORPO_RICHIESTA + 1);
+        if (corpo.length > MAX_CORPO_RICHIESTA) {
+            // Content-Length assente (chunked) o non veritiero
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Corpo della richiesta troppo grande");
+            return;
+        }
+        String impronta = IdempotenzaService.sha256(corpo);
+        String chiave = IdempotenzaService.chiave(request.getMethod(), request.getRequestURI(), utente(), chiaveClient);
+
+        IdempotenzaService.Accesso accesso = idempotenzaService.accedi(chiave, impronta);
+        switch (accesso.stato()) {
+            case RIPETI -> {
+                ripeti(accesso.risposta(), impronta, response);
+                return;
+            }
+            case IN_CORSO -> {
+                // Il client può riprovare con la stessa chiave
+                response.sendError(HttpStatus.CONFLICT.value(), "Richiesta con la stessa Idempotency-Key in corso");
+                return;
+            }
+            case ESEGUI -> { }
+        }
+
+        ContentCachingResponseWrapper risposta = new ContentCachingResponseWrapper(response);
+        boolean completata = false;
+        try {
+            filterChain.doFilter(new RichiestaMemorizzata(request, corpo), risposta);
+            byte[] corpoRisposta = risposta.getContentAsByteArray();
+            if (memorizzabile(risposta.getStatus()) && corpoRisposta.length <= RispostaIdempotente.MAX_CORPO) {
+                idempotenzaService.completa(chiave, new IdempotenzaService.Risposta(
+                        impronta, risposta.getStatus(), risposta.getContentType(), corpoRisposta));
+                completata = true;
+            }
+            risposta.copyBodyToResponse();
+        } finally {
+            if (!completata) {
+                idempotenzaService.abbandona(chiave);
+            }
+        }
+    }
+
+    private static boolean memorizzabile(int stato) {
+        return stato < 500 && stato != HttpStatus.UNAUTHORIZED.value() && stato != HttpStatus.FORBIDDEN.value()
+                && stato != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static void ripeti(IdempotenzaService.Risposta memorizzata, String impronta, HttpServletResponse response)
+            throws IOException {
+        if (!memorizzata.impronta().equals(impronta)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    "Idempotency-Key già usata per una richiesta diversa");
+            return;
+        }
+        response.setStatus(memorizzata.stato());
+        response.setHeader(HEADER_RIPETUTA, "true");
+        if (memorizzata.tipoContenuto() != null) {
+            response.setContentType(memorizzata.tipoContenuto());
+        }
+        if (memorizzata.corpo() != null) {
+            response.setContentLength(memorizzata.corpo().length);
+            response.getOutputStream().write(memorizzata.corpo());
+        }
+    }
+
+    private static String utente() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return "";
+        }
+        return authentication.getName();
+    }
+
+    // Il corpo è già stato letto per calcolarne l'impronta: la richiesta lo rende di nuovo disponibile
+    private static final class RichiestaMemorizzata extends HttpServletRequestWrapper {
+
+        private final byte[] corpo;
+
+        private RichiestaMemorizzata(HttpServletRequest request, byte[] corpo) {
+            super(request);
+            this.corpo = corpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(corpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() != null
+                    ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return corpo.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return corpo.length;
+        }
+    }
+}
@@ -2,13 +2,38 @@ package com.stage.concessionario.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.stage.concessionario.service.ContatoriModificheService;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ContatoriModificheService contatoriModifiche;
+
+    public WebConfig(ContatoriModificheService contatoriModifiche) {
+        this.contatoriModifiche = contatoriModifiche;
+    }
+
+    // Ogni gruppo di API dipende dalle tabelle i cui dati compaiono nei DTO restituiti
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ETagInterceptor(contatoriModifiche, Tabella.VEICOLI, Tabella.CONFIGURAZIONI))
+                .addPathPatterns("/api/veicoli", "/api/veicoli/**")
+                // Le prenotazioni cambiano senza passare dai contatori
+                .excludePathPatterns("/api/veicoli/*/hold");
+        registry.addInterceptor(new ETagInterceptor(contatoriModifiche, Tabella.UTENTI))
+                .addPathPatterns("/api/utenti", "/api/utenti/**");
+        registry.addInterceptor(new ETagInterceptor(contatoriModifiche, Tabella.MOVIMENTI, Tabella.UTENTI, Tabella.VEICOLI))
+                .addPathPatterns("/api/movimenti", "/api/movimenti/**");
+        registry.addInterceptor(new ETagInterceptor(contatoriModifiche, Tabella.CONFIGURAZIONI))
+                .addPathPatterns("/api/configurazioni", "/api/configurazioni/**");
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -1,10 +1,17 @@
 package com.stage.concessionario.controller;
 
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -12,31 +19,86 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.stage.concessionario.dto.LoginRequestDTO;
 import com.stage.concessionario.dto.LoginResponseDto;
+import com.stage.concessionario.dto.RefreshRequestDto;
+import com.stage.concessionario.security.LimitatoreLogin;
+import com.stage.concessionario.security.TokenService;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
     private final AuthenticationManager authenticationManager;
+    private final UserDetailsService userDetailsService;
+    private final TokenService tokenService;
+    private final LimitatoreLogin limitatoreLogin;
 
-    public AuthController(AuthenticationManager authenticationManager) {
+    public AuthController(AuthenticationManager authenticationManager, UserDetailsService userDetailsService,
+            TokenService tokenService, LimitatoreLogin limitatoreLogin) {
         this.authenticationManager = authenticationManager;
+        this.userDetailsService = userDetailsService;
+        this.tokenService = tokenService;
+        this.limitatoreLogin = limitatoreLogin;
     }
 
+    // Le credenziali (e quindi BCrypt) sono verificate solo qui: le richieste successive usano il token
     @PostMapping("/login")
-    public ResponseEntity<LoginResponseDto> login(@RequestBody LoginRequestDTO loginRequest) {
+    public ResponseEntity<LoginResponseDto> login(@RequestBody LoginRequestDTO loginRequest, HttpServletRequest request) {
+        LimitatoreLogin.Esito esito = limitatoreLogin.tentativo(loginRequest.getEmail(), request.getRemoteAddr());
+        if (esito != LimitatoreLogin.Esito.CONSENTITO) {
+            String messaggio = esito == LimitatoreLogin.Esito.TROPPI_TENTATIVI
+                    ? "Troppi tentativi di login, riprovare più tardi"
+                    : "Server occupato, riprovare tra poco";
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(limitatoreLogin.secondiAttesa()))
+                    .body(new LoginResponseDto(null, false, messaggio));
+        }
+
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             loginRequest.getEmail(),
                             loginRequest.getPassword()));
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            String username = authentication.getName();
-
-            return ResponseEntity.ok(new LoginResponseDto(username, true, "Login effettuato con successo"));
+            LoginResponseDto response = new LoginResponseDto(authentication.getName(), true, "Login effettuato con successo");
+            emettiToken(response, authentication.getName(), authentication);
+            return ResponseEntity.ok(response);
+        } catch (AuthenticationException e) {
+            // Solo i login falliti consumano i gettoni del limitatore
+            limitatoreLogin.fallito(loginRequest.getEmail(), request.getRemoteAddr());
+            return ResponseEntity.badRequest().body(new LoginResponseDto(null, false, "Credenziali non valide"));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new LoginResponseDto(null, false, "Credenziali non valide"));
+        } finally {
+            limitatoreLogin.rilascia();
+        }
+    }
+
+    // Nuova coppia di token: ruoli ricaricati, così un amministratore eliminato non può rinnovare l'accesso
+    @PostMapping("/refresh")
+    public ResponseEntity<LoginResponseDto> refresh(@RequestBody RefreshRequestDto refreshRequest) {
+        Optional<String> username = tokenService.verificaRefresh(refreshRequest.getRefreshToken());
+        if (username.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new LoginResponseDto(null, false, "Refresh token non valido o scaduto"));
         }
+
+        try {
+            UserDetails utente = userDetailsService.loadUserByUsername(username.get());
+            LoginResponseDto response = new LoginResponseDto(utente.getUsername(), true, "Token rinnovato");
+            emettiToken(response, utente.getUsername(),
+                    UsernamePasswordAuthenticationToken.authenticated(utente, null, utente.getAuthorities()));
+            return ResponseEntity.ok(response);
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new LoginResponseDto(null, false, "Amministratore non più esistente"));
+        }
+    }
+
+    private void emettiToken(LoginResponseDto response, String username, Authentication authentication) {
+        response.setToken(tokenService.emettiAccesso(username, authentication.getAuthorities()));
+        response.setRefreshToken(tokenService.emettiRefresh(username));
+        response.setExpiresIn(tokenService.getDurataAccessoSecondi());
     }
 }
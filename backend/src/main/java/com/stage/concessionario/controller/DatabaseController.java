@@ -17,24 +17,6 @@ public class DatabaseController {
         this.databaseService = databaseService;
     }
 
-    @PostMapping("/reset-movimento-sequence")
-    public ResponseEntity<String> resetMovimentoSequence() {
-        databaseService.resetSequence("movimento");
-        return ResponseEntity.ok("Sequenza della tabella movimento resettata con successo");
-    }
-
-    @PostMapping("/reset-configurazione-sequence")
-    public ResponseEntity<String> resetConfigurazioneSequence() {
-        databaseService.resetSequence("configurazione");
-        return ResponseEntity.ok("Sequenza della tabella configurazione resettata con successo");
-    }
-
-    @PostMapping("/reset-amministratore-sequence")
-    public ResponseEntity<String> resetAmministratoreSequence() {
-        databaseService.resetSequence("amministratore");
-        return ResponseEntity.ok("Sequenza della tabella amministratore resettata con successo");
-    }
-    
     @PostMapping("/create-movimento-delete-trigger")
     public ResponseEntity<String> createMovimentoDeleteTrigger() {
         databaseService.createTriggerForMovimentiDelete();
@@ -5,8 +5,13 @@ import java.util.Date;
 import org.springframework.format.annotation.DateTimeFormat;
 import com.stage.concessionario.model.TipoMovimento;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,9 +21,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.stage.concessionario.dto.ImportReportDto;
 import com.stage.concessionario.dto.MovimentoRequestDto;
 import com.stage.concessionario.dto.MovimentoResponseDto;
+import com.stage.concessionario.dto.PageResponseDto;
+import com.stage.concessionario.service.BatchMovimentiService;
 import com.stage.concessionario.service.MovimentoService;
+import com.stage.concessionario.service.VeicoloNonDisponibileException;
 
 import jakarta.validation.Valid;
 
@@ -27,14 +36,21 @@ import jakarta.validation.Valid;
 public class MovimentoController {
 
     private final MovimentoService movimentoService;
+    private final BatchMovimentiService batchMovimentiService;
 
-    public MovimentoController(MovimentoService movimentoService) {
+    public MovimentoController(MovimentoService movimentoService, BatchMovimentiService batchMovimentiService) {
         this.movimentoService = movimentoService;
+        this.batchMovimentiService = batchMovimentiService;
     }
 
     @GetMapping
-    public List<MovimentoResponseDto> getMovimenti() {
-        return movimentoService.getMovimenti();
+    public ResponseEntity<PageResponseDto<MovimentoResponseDto>> getMovimenti(
+            @PageableDefault(sort = "idMovimento") Pageable pageable) {
+        try {
+            return ResponseEntity.ok(movimentoService.getMovimenti(pageable));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
     }
     
     @GetMapping("/{id}")
@@ -59,12 +75,14 @@ public class MovimentoController {
     }
     
     @GetMapping("/search")
-    public List<MovimentoResponseDto> searchMovimenti(
+    public ResponseEntity<?> searchMovimenti(
             @RequestParam(required = false) String tipo,
             @RequestParam(required = false) String numeroTelaio,
             @RequestParam(required = false) String codiceFiscaleUtente,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date dataInizio,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date dataFine
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date dataFine,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size
     ) {
         TipoMovimento tipoMovimento = null;
         if (tipo != null && !tipo.isEmpty()) {
@@ -74,7 +92,12 @@ public class MovimentoController {
                 // tipo non valido, ignora
             }
         }
-        return movimentoService.searchMovimenti(tipoMovimento, numeroTelaio, codiceFiscaleUtente, dataInizio, dataFine);
+        try {
+            return ResponseEntity.ok(movimentoService.searchMovimenti(
+                    tipoMovimento, numeroTelaio, codiceFiscaleUtente, dataInizio, dataFine, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
     }
 
     // @GetMapping(params = "tipo")
@@ -83,7 +106,8 @@ public class MovimentoController {
     // }
     
     @PostMapping
-    public ResponseEntity<MovimentoResponseDto> insert(@Valid @RequestBody MovimentoRequestDto movimentoRequestDto) {
+    public ResponseEntity<MovimentoResponseDto> insert(@Valid @RequestBody MovimentoRequestDto movimentoRequestDto,
+            Authentication authentication) {
         // Se non c'è comproprietario, assicurati che il campo codiceFiscaleComproprietario sia null
         if (!movimentoRequestDto.isHasComproprietario()) {
             movimentoRequestDto.setCodiceFiscaleComproprietario(null);
@@ -111,7 +135,14 @@ public class MovimentoController {
             movimentoRequestDto.setPrezzoPerProprietario(prezzoPerProprietario);
         }
         
-        MovimentoResponseDto movimentoResponseDto = movimentoService.insert(movimentoRequestDto);
+        MovimentoResponseDto movimentoResponseDto;
+        try {
+            movimentoResponseDto = movimentoService.insert(movimentoRequestDto,
+                    authentication != null ? authentication.getName() : null);
+        } catch (VeicoloNonDisponibileException e) {
+            // Veicolo già venduto, anche da una richiesta concorrente, o prenotato da un altro operatore
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        }
         
         if (movimentoResponseDto == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
@@ -120,10 +151,38 @@ public class MovimentoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(movimentoResponseDto);
     }
 
+    // Lotto tutto o niente: con anche un solo errore nessun movimento viene inserito
+    @PostMapping("/batch")
+    public ResponseEntity<ImportReportDto> insertBatch(@RequestBody List<MovimentoRequestDto> movimenti,
+            Authentication authentication) {
+        try {
+            ImportReportDto report = batchMovimentiService.inserisci(movimenti,
+                    authentication != null ? authentication.getName() : null);
+            if (report.getErroriTotali() > 0) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(report);
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(report);
+        } catch (IllegalArgumentException e) {
+            // Lotto vuoto o oltre il limite: stesso formato di report degli import, riferito all'intero lotto
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(erroreLotto(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            // Un veicolo del lotto è stato modificato nel frattempo: il lotto è annullato e può essere reinviato
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(erroreLotto("Un veicolo del lotto è stato modificato da un'altra richiesta, reinviare il lotto"));
+        }
+    }
+
+    private static ImportReportDto erroreLotto(String messaggio) {
+        ImportReportDto report = new ImportReportDto();
+        report.aggiungiErrore(0, null, messaggio);
+        return report;
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<MovimentoResponseDto> update(
             @PathVariable Integer id, 
-            @Valid @RequestBody MovimentoRequestDto movimentoRequestDto) {
+            @Validated(MovimentoRequestDto.Aggiornamento.class) @RequestBody MovimentoRequestDto movimentoRequestDto,
+            Authentication authentication) {
         
         // Se non c'è comproprietario, assicurati che il campo codiceFiscaleComproprietario sia null
         if (!movimentoRequestDto.isHasComproprietario()) {
@@ -152,7 +211,20 @@ public class MovimentoController {
             movimentoRequestDto.setPrezzoPerProprietario(prezzoPerProprietario);
         }
         
-        MovimentoResponseDto movimentoResponseDto = movimentoService.update(movimentoRequestDto, id);
+        MovimentoResponseDto movimentoResponseDto;
+        try {
+            movimentoResponseDto = movimentoService.update(movimentoRequestDto, id,
+                    authentication != null ? authentication.getName() : null);
+        } catch (IllegalArgumentException e) {
+            // Versione mancante
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        } catch (OptimisticLockingFailureException e) {
+            // Il corpo contiene lo stato corrente, con la versione da usare per riprovare
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(movimentoService.getMovimentoById(id));
+        } catch (VeicoloNonDisponibileException e) {
+            // Veicolo prenotato da un altro operatore
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        }
         
         if (movimentoResponseDto == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
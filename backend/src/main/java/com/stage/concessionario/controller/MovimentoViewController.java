@@ -1,12 +1,19 @@
 package com.stage.concessionario.controller;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.stage.concessionario.dto.CursorPageDto;
+import com.stage.concessionario.dto.MovimentoResponseDto;
+import com.stage.concessionario.dto.PageResponseDto;
 import com.stage.concessionario.model.TipoMovimento;
 import com.stage.concessionario.service.MovimentoService;
 
@@ -23,8 +30,16 @@ public class MovimentoViewController {
     }
 
     @GetMapping
-    public String getMovimentiPage(Model model) {
-        model.addAttribute("movimenti", movimentoService.getMovimenti());
+    public String getMovimentiPage(@PageableDefault(sort = "idMovimento") Pageable pageable, Model model) {
+        PageResponseDto<MovimentoResponseDto> pagina;
+        try {
+            pagina = movimentoService.getMovimenti(pageable);
+        } catch (IllegalArgumentException e) {
+            // Ordinamento non consentito, come nelle API REST
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        model.addAttribute("movimenti", pagina.getContent());
+        model.addAttribute("pagina", pagina);
         return "movimenti";
     }
     
@@ -35,6 +50,7 @@ public class MovimentoViewController {
             @RequestParam(required = false) String codiceFiscaleUtente,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date dataInizio,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date dataFine,
+            @RequestParam(required = false) String cursor,
             Model model) {
         
         // Converti la stringa del tipo in enum se presente
@@ -48,8 +64,16 @@ public class MovimentoViewController {
         }
         
         // Chiama il servizio per cercare i movimenti con i filtri specificati
-        model.addAttribute("movimenti", movimentoService.searchMovimenti(
-                tipoMovimento, numeroTelaio, codiceFiscaleUtente, dataInizio, dataFine));
+        CursorPageDto<MovimentoResponseDto> pagina;
+        try {
+            pagina = movimentoService.searchMovimenti(
+                    tipoMovimento, numeroTelaio, codiceFiscaleUtente, dataInizio, dataFine, cursor, null);
+        } catch (IllegalArgumentException e) {
+            // Cursore non valido
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        model.addAttribute("movimenti", pagina.getContent());
+        model.addAttribute("nextCursor", pagina.getNextCursor());
         
         return "movimenti";
     }
@@ -1,10 +1,16 @@
 package com.stage.concessionario.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,10 +20,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
+import com.stage.concessionario.dto.ImportReportDto;
+import com.stage.concessionario.dto.PageResponseDto;
 import com.stage.concessionario.dto.UtenteRequestDto;
 import com.stage.concessionario.dto.UtenteResponseDto;
 import com.stage.concessionario.dto.UtenteUpdateDto;
+import com.stage.concessionario.service.ImportUtentiService;
 import com.stage.concessionario.service.UtenteService;
 
 import jakarta.validation.Valid;
@@ -27,17 +37,47 @@ import jakarta.validation.Valid;
 public class UtenteController {
 
     private final UtenteService utenteService;
+    private final ImportUtentiService importUtentiService;
     private static final Logger logger = LoggerFactory.getLogger(UtenteController.class);
 
-    public UtenteController(UtenteService utenteService) {
+    public UtenteController(UtenteService utenteService, ImportUtentiService importUtentiService) {
         this.utenteService = utenteService;
+        this.importUtentiService = importUtentiService;
     }
 
     @GetMapping
-    public List<UtenteResponseDto> getUtenti() {
-        return utenteService.getUtenti();
+    public ResponseEntity<PageResponseDto<UtenteResponseDto>> getUtenti(
+            @PageableDefault(sort = "codiceFiscaleUtente") Pageable pageable) {
+        try {
+            return ResponseEntity.ok(utenteService.getUtenti(pageable));
+        } catch (IllegalArgumentException e) {
+            logger.error("Richiesta di paginazione non valida: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
     }
     
+    // CSV con intestazione oppure NDJSON (estensione .ndjson/.jsonl o tipo application/x-ndjson);
+    // daRiga permette di riprendere un import interrotto dall'ultima riga confermata
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportReportDto> importa(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "0") long daRiga) {
+        String nome = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
+        boolean ndjson = nome.endsWith(".ndjson") || nome.endsWith(".jsonl")
+                || "application/x-ndjson".equals(file.getContentType());
+        try (InputStream input = file.getInputStream()) {
+            return ResponseEntity.ok(importUtentiService.importa(input, ndjson, daRiga));
+        } catch (IllegalArgumentException e) {
+            logger.error("File di import utenti non valido: {}", e.getMessage());
+            ImportReportDto report = new ImportReportDto();
+            report.aggiungiErrore(1, null, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(report);
+        } catch (IOException e) {
+            logger.error("Errore di lettura del file di import utenti", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
     @GetMapping(params = "codiceFiscale")
     public UtenteResponseDto getUtenteByCodiceFiscale(@RequestParam String codiceFiscale) {
         return utenteService.getUtenteByCodiceFiscale(codiceFiscale);
@@ -109,7 +149,13 @@ public class UtenteController {
     public ResponseEntity<UtenteResponseDto> update(
             @Valid @RequestParam String codiceFiscale, 
             @RequestBody UtenteUpdateDto utenteUpdateDto) {
-        UtenteResponseDto utenteResponseDto = utenteService.update(utenteUpdateDto, codiceFiscale);
+        UtenteResponseDto utenteResponseDto;
+        try {
+            utenteResponseDto = utenteService.update(utenteUpdateDto, codiceFiscale);
+        } catch (OptimisticLockingFailureException e) {
+            // Il corpo contiene lo stato corrente, con la versione da usare per riprovare
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(utenteService.getUtenteByCodiceFiscale(codiceFiscale));
+        }
         
         if (utenteResponseDto == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -122,7 +168,13 @@ public class UtenteController {
     public ResponseEntity<UtenteResponseDto> updateByPath(
             @Valid @PathVariable String codiceFiscale, 
             @RequestBody UtenteUpdateDto utenteUpdateDto) {
-        UtenteResponseDto utenteResponseDto = utenteService.update(utenteUpdateDto, codiceFiscale);
+        UtenteResponseDto utenteResponseDto;
+        try {
+            utenteResponseDto = utenteService.update(utenteUpdateDto, codiceFiscale);
+        } catch (OptimisticLockingFailureException e) {
+            // Il corpo contiene lo stato corrente, con la versione da usare per riprovare
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(utenteService.getUtenteByCodiceFiscale(codiceFiscale));
+        }
         
         if (utenteResponseDto == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
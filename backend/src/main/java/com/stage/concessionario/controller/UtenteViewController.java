@@ -1,11 +1,17 @@
 package com.stage.concessionario.controller;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.stage.concessionario.dto.PageResponseDto;
+import com.stage.concessionario.dto.UtenteResponseDto;
 import com.stage.concessionario.service.UtenteService;
 
 @Controller
@@ -19,8 +25,16 @@ public class UtenteViewController {
     }
 
     @GetMapping
-    public String getUtentiPage(Model model) {
-        model.addAttribute("utenti", utenteService.getUtenti());
+    public String getUtentiPage(@PageableDefault(sort = "codiceFiscaleUtente") Pageable pageable, Model model) {
+        PageResponseDto<UtenteResponseDto> pagina;
+        try {
+            pagina = utenteService.getUtenti(pageable);
+        } catch (IllegalArgumentException e) {
+            // Ordinamento non consentito, come nelle API REST
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        model.addAttribute("utenti", pagina.getContent());
+        model.addAttribute("pagina", pagina);
         return "utenti";
     }
     
@@ -1,9 +1,18 @@
 package com.stage.concessionario.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,12 +21,23 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
+import com.stage.concessionario.dto.FacetVeicoliDto;
+import com.stage.concessionario.dto.ImportReportDto;
+import com.stage.concessionario.dto.PageResponseDto;
+import com.stage.concessionario.dto.PrenotazioneRequestDto;
+import com.stage.concessionario.dto.PrenotazioneResponseDto;
+import com.stage.concessionario.dto.SuggerimentoDto;
 import com.stage.concessionario.dto.VeicoloRequestDto;
 import com.stage.concessionario.dto.VeicoloResponseDto;
 import com.stage.concessionario.dto.VeicoloUpdateDto;
 import com.stage.concessionario.service.VeicoloService;
 import com.stage.concessionario.service.ConfigurazioneService;
+import com.stage.concessionario.service.ImportVeicoliService;
+import com.stage.concessionario.service.PrenotazioniService;
+import com.stage.concessionario.service.SuggerimentiVeicoliService;
+import com.stage.concessionario.service.VeicoloNonDisponibileException;
 
 import jakarta.validation.Valid;
 
@@ -27,15 +47,28 @@ public class VeicoloController {
 
     private final VeicoloService veicoloService;
     private final ConfigurazioneService configurazioneService;
+    private final SuggerimentiVeicoliService suggerimentiVeicoliService;
+    private final ImportVeicoliService importVeicoliService;
+    private final PrenotazioniService prenotazioniService;
 
-    public VeicoloController(VeicoloService veicoloService, ConfigurazioneService configurazioneService) {
+    public VeicoloController(VeicoloService veicoloService, ConfigurazioneService configurazioneService,
+            SuggerimentiVeicoliService suggerimentiVeicoliService, ImportVeicoliService importVeicoliService,
+            PrenotazioniService prenotazioniService) {
         this.veicoloService = veicoloService;
         this.configurazioneService = configurazioneService;
+        this.suggerimentiVeicoliService = suggerimentiVeicoliService;
+        this.importVeicoliService = importVeicoliService;
+        this.prenotazioniService = prenotazioniService;
     }
 
     @GetMapping
-    public List<VeicoloResponseDto> getVeicoli() {
-        return veicoloService.getVeicoli();
+    public ResponseEntity<PageResponseDto<VeicoloResponseDto>> getVeicoli(
+            @PageableDefault(sort = "numeroTelaio") Pageable pageable) {
+        try {
+            return ResponseEntity.ok(veicoloService.getVeicoli(pageable));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
     }
     
     @GetMapping("/disponibili")
@@ -43,6 +76,47 @@ public class VeicoloController {
         return veicoloService.getVeicoliDisponibili();
     }
     
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportReportDto> importa(@RequestParam("file") MultipartFile file) {
+        try (InputStream input = file.getInputStream()) {
+            return ResponseEntity.ok(importVeicoliService.importa(input));
+        } catch (IllegalArgumentException e) {
+            ImportReportDto report = new ImportReportDto();
+            report.aggiungiErrore(1, null, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(report);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<FacetVeicoliDto> getFacets(
+            @RequestParam(required = false) String numeroTelaio,
+            @RequestParam(required = false) String marca,
+            @RequestParam(required = false) String modello,
+            @RequestParam(required = false) Integer annoMin,
+            @RequestParam(required = false) Integer annoMax,
+            @RequestParam(required = false) Integer chilometraggioMin,
+            @RequestParam(required = false) Integer chilometraggioMax,
+            @RequestParam(required = false) Boolean disponibile) {
+        return ResponseEntity.ok(veicoloService.getFacets(numeroTelaio, marca, modello,
+                annoMin, annoMax, chilometraggioMin, chilometraggioMax, disponibile));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggerimentoDto>> suggest(
+            @RequestParam(defaultValue = "marca") String campo,
+            @RequestParam(defaultValue = "") String prefisso,
+            @RequestParam(defaultValue = "10") int limite) {
+        if ("marca".equals(campo)) {
+            return ResponseEntity.ok(suggerimentiVeicoliService.suggerisciMarche(prefisso, limite));
+        }
+        if ("modello".equals(campo)) {
+            return ResponseEntity.ok(suggerimentiVeicoliService.suggerisciModelli(prefisso, limite));
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+    }
+    
     @GetMapping("/{numeroTelaio}")
     public ResponseEntity<VeicoloResponseDto> getVeicoloByNumeroTelaio(@PathVariable String numeroTelaio) {
         VeicoloResponseDto veicoloResponseDto = veicoloService.getVeicoloByNumeroTelaio(numeroTelaio);
@@ -58,8 +132,14 @@ public class VeicoloController {
     public List<VeicoloResponseDto> searchVeicoli(
             @RequestParam(required = false) String numeroTelaio,
             @RequestParam(required = false) String marca, 
-            @RequestParam(required = false) String modello) {
-        return veicoloService.searchVeicoli(numeroTelaio, marca, modello);
+            @RequestParam(required = false) String modello,
+            @RequestParam(required = false) Integer annoMin,
+            @RequestParam(required = false) Integer annoMax,
+            @RequestParam(required = false) Integer chilometraggioMin,
+            @RequestParam(required = false) Integer chilometraggioMax,
+            @RequestParam(required = false) Boolean disponibile) {
+        return veicoloService.searchVeicoli(numeroTelaio, marca, modello,
+                annoMin, annoMax, chilometraggioMin, chilometraggioMax, disponibile);
     }
     
     @PostMapping
@@ -77,7 +157,13 @@ public class VeicoloController {
     public ResponseEntity<VeicoloResponseDto> update(
             @PathVariable String numeroTelaio, 
             @Valid @RequestBody VeicoloUpdateDto veicoloUpdateDto) {
-        VeicoloResponseDto veicoloResponseDto = veicoloService.update(veicoloUpdateDto, numeroTelaio);
+        VeicoloResponseDto veicoloResponseDto;
+        try {
+            veicoloResponseDto = veicoloService.update(veicoloUpdateDto, numeroTelaio);
+        } catch (OptimisticLockingFailureException e) {
+            // Il corpo contiene lo stato corrente, con la versione da usare per riprovare
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(veicoloService.getVeicoloCorrente(numeroTelaio));
+        }
         
         if (veicoloResponseDto == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -85,4 +171,54 @@ public class VeicoloController {
         
         return ResponseEntity.status(HttpStatus.OK).body(veicoloResponseDto);
     }
-}
\ No newline at end of file
+
+    // Prenotazione temporanea durante una trattativa; ripetuta dallo stesso titolare la rinnova.
+    // Il titolare è l'utente autenticato: senza autenticazione la risposta è 401
+    @PreAuthorize("isAuthenticated()")
+    @PostMapping("/{numeroTelaio}/hold")
+    public ResponseEntity<PrenotazioneResponseDto> hold(
+            @PathVariable String numeroTelaio,
+            @Valid @RequestBody(required = false) PrenotazioneRequestDto prenotazioneRequestDto,
+            Authentication authentication) {
+        Integer minuti = prenotazioneRequestDto != null ? prenotazioneRequestDto.getMinuti() : null;
+        String nota = prenotazioneRequestDto != null ? prenotazioneRequestDto.getNota() : null;
+        PrenotazioneResponseDto prenotazioneResponseDto;
+        try {
+            prenotazioneResponseDto = prenotazioniService.prenota(numeroTelaio, authentication.getName(), minuti, nota);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        } catch (VeicoloNonDisponibileException e) {
+            // Veicolo venduto o prenotato da un altro operatore
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(prenotazioniService.getPrenotazione(numeroTelaio));
+        }
+
+        if (prenotazioneResponseDto == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(prenotazioneResponseDto);
+    }
+
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping("/{numeroTelaio}/hold")
+    public ResponseEntity<PrenotazioneResponseDto> getHold(@PathVariable String numeroTelaio) {
+        PrenotazioneResponseDto prenotazioneResponseDto = prenotazioniService.getPrenotazione(numeroTelaio);
+        if (prenotazioneResponseDto == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(prenotazioneResponseDto);
+    }
+
+    @PreAuthorize("isAuthenticated()")
+    @DeleteMapping("/{numeroTelaio}/hold")
+    public ResponseEntity<Void> releaseHold(@PathVariable String numeroTelaio, Authentication authentication) {
+        try {
+            if (!prenotazioniService.rilascia(numeroTelaio, authentication.getName())) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+        } catch (VeicoloNonDisponibileException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.stage.concessionario.controller;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.stage.concessionario.dto.PageResponseDto;
+import com.stage.concessionario.dto.VeicoloResponseDto;
+import com.stage.concessionario.service.ConfigurazioneService;
+import com.stage.concessionario.service.VeicoloService;
+
+@Controller
+@RequestMapping("/veicoli")
+public class VeicoloViewController {
+
+    private final VeicoloService veicoloService;
+    private final ConfigurazioneService configurazioneService;
+
+    public VeicoloViewController(VeicoloService veicoloService, ConfigurazioneService configurazioneService) {
+        this.veicoloService = veicoloService;
+        this.configurazioneService = configurazioneService;
+    }
+
+    @GetMapping
+    public String getVeicoliPage(@PageableDefault(sort = "numeroTelaio") Pageable pageable, Model model) {
+        PageResponseDto<VeicoloResponseDto> pagina;
+        try {
+            pagina = veicoloService.getVeicoli(pageable);
+        } catch (IllegalArgumentException e) {
+            // Ordinamento non consentito, come nelle API REST
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        model.addAttribute("veicoli", pagina.getContent());
+        model.addAttribute("pagina", pagina);
+        model.addAttribute("configurazioni", configurazioneService.getConfigurazioni());
+        return "veicoli";
+    }
+}
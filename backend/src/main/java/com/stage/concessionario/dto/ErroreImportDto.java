@@ -0,0 +1,39 @@
+package com.stage.concessionario.dto;
+
+public class ErroreImportDto {
+    private long riga;
+    private String chiave;
+    private String messaggio;
+
+    public ErroreImportDto() {}
+
+    public ErroreImportDto(long riga, String chiave, String messaggio) {
+        this.riga = riga;
+        this.chiave = chiave;
+        this.messaggio = messaggio;
+    }
+
+    public long getRiga() {
+        return riga;
+    }
+
+    public void setRiga(long riga) {
+        this.riga = riga;
+    }
+
+    public String getChiave() {
+        return chiave;
+    }
+
+    public void setChiave(String chiave) {
+        this.chiave = chiave;
+    }
+
+    public String getMessaggio() {
+        return messaggio;
+    }
+
+    public void setMessaggio(String messaggio) {
+        this.messaggio = messaggio;
+    }
+}
@@ -0,0 +1,62 @@
+package com.stage.concessionario.dto;
+
+import java.util.Map;
+
+public class FacetVeicoliDto {
+    private long totale;
+    private Map<Object, Long> marca;
+    private Map<Object, Long> modello;
+    private Map<Object, Long> annoImmatricolazione;
+    private Map<Object, Long> configurazione;
+    private Map<Object, Long> disponibile;
+
+    public FacetVeicoliDto() {}
+
+    public long getTotale() {
+        return totale;
+    }
+
+    public void setTotale(long totale) {
+        this.totale = totale;
+    }
+
+    public Map<Object, Long> getMarca() {
+        return marca;
+    }
+
+    public void setMarca(Map<Object, Long> marca) {
+        this.marca = marca;
+    }
+
+    public Map<Object, Long> getModello() {
+        return modello;
+    }
+
+    public void setModello(Map<Object, Long> modello) {
+        this.modello = modello;
+    }
+
+    public Map<Object, Long> getAnnoImmatricolazione() {
+        return annoImmatricolazione;
+    }
+
+    public void setAnnoImmatricolazione(Map<Object, Long> annoImmatricolazione) {
+        this.annoImmatricolazione = annoImmatricolazione;
+    }
+
+    public Map<Object, Long> getConfigurazione() {
+        return configurazione;
+    }
+
+    public void setConfigurazione(Map<Object, Long> configurazione) {
+        this.configurazione = configurazione;
+    }
+
+    public Map<Object, Long> getDisponibile() {
+        return disponibile;
+    }
+
+    public void setDisponibile(Map<Object, Long> disponibile) {
+        this.disponibile = disponibile;
+    }
+}
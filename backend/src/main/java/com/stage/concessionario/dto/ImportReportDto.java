@@ -0,0 +1,98 @@
+package com.stage.concessionario.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportReportDto {
+    // Oltre questo numero gli errori sono solo contati, per non tenere in memoria un file interamente errato
+    public static final int MAX_ERRORI_DETTAGLIATI = 1000;
+
+    private long righeLette;
+    private long righeImportate;
+    private long erroriTotali;
+    // Ultima riga del file i cui dati sono stati confermati: un import interrotto riprende dalla successiva
+    private long ultimaRigaConfermata;
+    private boolean interrotto;
+    private long durataMillisecondi;
+    private double righeAlSecondo;
+    private List<ErroreImportDto> errori = new ArrayList<>();
+
+    public ImportReportDto() {}
+
+    public void aggiungiErrore(long riga, String chiave, String messaggio) {
+        erroriTotali++;
+        if (errori.size() < MAX_ERRORI_DETTAGLIATI) {
+            errori.add(new ErroreImportDto(riga, chiave, messaggio));
+        }
+    }
+
+    public long getRigheLette() {
+        return righeLette;
+    }
+
+    public void setRigheLette(long righeLette) {
+        this.righeLette = righeLette;
+    }
+
+    public long getRigheImportate() {
+        return righeImportate;
+    }
+
+    public void setRigheImportate(long righeImportate) {
+        this.righeImportate = righeImportate;
+    }
+
+    public long getErroriTotali() {
+        return erroriTotali;
+    }
+
+    public void setErroriTotali(long erroriTotali) {
+        this.erroriTotali = erroriTotali;
+    }
+
+    public long getUltimaRigaConfermata() {
+        return ultimaRigaConfermata;
+    }
+
+    public void setUltimaRigaConfermata(long ultimaRigaConfermata) {
+        this.ultimaRigaConfermata = ultimaRigaConfermata;
+    }
+
+    public boolean isInterrotto() {
+        return interrotto;
+    }
+
+    public void setInterrotto(boolean interrotto) {
+        this.interrotto = interrotto;
+    }
+
+    public long getDurataMillisecondi() {
+        return durataMillisecondi;
+    }
+
+    public void setDurataMillisecondi(long durataMillisecondi) {
+        this.durataMillisecondi = durataMillisecondi;
+    }
+
+    public double getRigheAlSecondo() {
+        return righeAlSecondo;
+    }
+
+    public void setRigheAlSecondo(double righeAlSecondo) {
+        this.righeAlSecondo = righeAlSecondo;
+    }
+
+    // Da chiamare a fine import per valorizzare durata e velocità
+    public void concludi(long inizioNanos) {
+        this.durataMillisecondi = (System.nanoTime() - inizioNanos) / 1_000_000;
+        this.righeAlSecondo = durataMillisecondi == 0 ? righeLette : righeLette * 1000.0 / durataMillisecondi;
+    }
+
+    public List<ErroreImportDto> getErrori() {
+        return errori;
+    }
+
+    public void setErrori(List<ErroreImportDto> errori) {
+        this.errori = errori;
+    }
+}
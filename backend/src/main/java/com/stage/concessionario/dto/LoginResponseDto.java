@@ -4,6 +4,9 @@ public class LoginResponseDto {
     private String username;
     private boolean success;
     private String message;
+    private String token;
+    private String refreshToken;
+    private long expiresIn;
 
     public LoginResponseDto() {
     }
@@ -37,4 +40,28 @@ public class LoginResponseDto {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
 }
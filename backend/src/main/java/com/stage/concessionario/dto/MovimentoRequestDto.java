@@ -3,7 +3,14 @@ package com.stage.concessionario.dto;
 import java.util.Date;
 import com.stage.concessionario.model.TipoMovimento;
 
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.groups.Default;
+
 public class MovimentoRequestDto {
+
+    // Gruppo di validazione di PUT /api/movimenti/{id}: i vincoli comuni più quelli dell'aggiornamento
+    public interface Aggiornamento extends Default {}
+
     private String codiceFiscaleUtente;
     private String numeroTelaio;
     private Date dataMovimento;
@@ -12,6 +19,10 @@ public class MovimentoRequestDto {
     private boolean hasComproprietario = false;
     private String codiceFiscaleComproprietario;
     private Double prezzoPerProprietario;
+    // Obbligatoria negli aggiornamenti, ignorata negli inserimenti: deve coincidere con la versione
+    // corrente del movimento, altrimenti 409
+    @NotNull(groups = Aggiornamento.class, message = "La versione è obbligatoria per l'aggiornamento")
+    private Long versione;
 
     public MovimentoRequestDto() {}
 
@@ -78,4 +89,12 @@ public class MovimentoRequestDto {
     public void setPrezzoPerProprietario(Double prezzoPerProprietario) {
         this.prezzoPerProprietario = prezzoPerProprietario;
     }
+
+    public Long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(Long versione) {
+        this.versione = versione;
+    }
 }
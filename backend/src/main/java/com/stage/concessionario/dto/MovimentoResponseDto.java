@@ -19,9 +19,37 @@ public class MovimentoResponseDto {
     private String nomeComproprietario;
     private String cognomeComproprietario;
     private Double prezzoPerProprietario;
+    private long versione;
 
     public MovimentoResponseDto() {}
 
+    // Usato dalle query di proiezione di MovimentoRepository (SELECT new ...)
+    public MovimentoResponseDto(int idMovimento, String codiceFiscaleUtente, String nomeUtente, String cognomeUtente,
+            String numeroTelaio, String marcaVeicolo, String modelloVeicolo, Date dataMovimento,
+            TipoMovimento tipoMovimento, double prezzo, boolean hasComproprietario,
+            String codiceFiscaleComproprietario, String nomeComproprietario, String cognomeComproprietario,
+            Double prezzoPerProprietario, long versione) {
+        this.idMovimento = idMovimento;
+        this.codiceFiscaleUtente = codiceFiscaleUtente;
+        this.nomeUtente = nomeUtente;
+        this.cognomeUtente = cognomeUtente;
+        this.numeroTelaio = numeroTelaio;
+        this.marcaVeicolo = marcaVeicolo;
+        this.modelloVeicolo = modelloVeicolo;
+        this.dataMovimento = dataMovimento;
+        this.tipoMovimento = tipoMovimento;
+        this.prezzo = prezzo;
+        this.hasComproprietario = hasComproprietario;
+        // Stessa regola di MovimentoMapper.toDto: i dati del comproprietario solo se la comproprietà è attiva
+        if (hasComproprietario && codiceFiscaleComproprietario != null) {
+            this.codiceFiscaleComproprietario = codiceFiscaleComproprietario;
+            this.nomeComproprietario = nomeComproprietario;
+            this.cognomeComproprietario = cognomeComproprietario;
+            this.prezzoPerProprietario = prezzoPerProprietario;
+        }
+        this.versione = versione;
+    }
+
     public int getIdMovimento() {
         return idMovimento;
     }
@@ -141,4 +169,12 @@ public class MovimentoResponseDto {
     public void setPrezzoPerProprietario(Double prezzoPerProprietario) {
         this.prezzoPerProprietario = prezzoPerProprietario;
     }
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
 }
@@ -0,0 +1,30 @@
+package com.stage.concessionario.dto;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+public class PrenotazioneRequestDto {
+    // Durata della prenotazione; se assente si usa prenotazioni.durata-predefinita
+    @Positive
+    private Integer minuti;
+    @Size(max = 200)
+    private String nota;
+
+    public PrenotazioneRequestDto() {}
+
+    public Integer getMinuti() {
+        return minuti;
+    }
+
+    public void setMinuti(Integer minuti) {
+        this.minuti = minuti;
+    }
+
+    public String getNota() {
+        return nota;
+    }
+
+    public void setNota(String nota) {
+        this.nota = nota;
+    }
+}
@@ -0,0 +1,53 @@
+package com.stage.concessionario.dto;
+
+import java.util.Date;
+
+public class PrenotazioneResponseDto {
+    private String numeroTelaio;
+    private String titolare;
+    private String nota;
+    private Date creata;
+    private Date scadenza;
+
+    public PrenotazioneResponseDto() {}
+
+    public String getNumeroTelaio() {
+        return numeroTelaio;
+    }
+
+    public void setNumeroTelaio(String numeroTelaio) {
+        this.numeroTelaio = numeroTelaio;
+    }
+
+    public String getTitolare() {
+        return titolare;
+    }
+
+    public void setTitolare(String titolare) {
+        this.titolare = titolare;
+    }
+
+    public String getNota() {
+        return nota;
+    }
+
+    public void setNota(String nota) {
+        this.nota = nota;
+    }
+
+    public Date getCreata() {
+        return creata;
+    }
+
+    public void setCreata(Date creata) {
+        this.creata = creata;
+    }
+
+    public Date getScadenza() {
+        return scadenza;
+    }
+
+    public void setScadenza(Date scadenza) {
+        this.scadenza = scadenza;
+    }
+}
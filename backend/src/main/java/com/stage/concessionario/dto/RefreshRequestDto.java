@@ -0,0 +1,16 @@
+package com.stage.concessionario.dto;
+
+public class RefreshRequestDto {
+    private String refreshToken;
+
+    public RefreshRequestDto() {
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
@@ -0,0 +1,29 @@
+package com.stage.concessionario.dto;
+
+public class SuggerimentoDto {
+    private String valore;
+    private long occorrenze;
+
+    public SuggerimentoDto() {}
+
+    public SuggerimentoDto(String valore, long occorrenze) {
+        this.valore = valore;
+        this.occorrenze = occorrenze;
+    }
+
+    public String getValore() {
+        return valore;
+    }
+
+    public void setValore(String valore) {
+        this.valore = valore;
+    }
+
+    public long getOccorrenze() {
+        return occorrenze;
+    }
+
+    public void setOccorrenze(long occorrenze) {
+        this.occorrenze = occorrenze;
+    }
+}
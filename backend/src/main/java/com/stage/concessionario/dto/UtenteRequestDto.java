@@ -2,13 +2,37 @@ package com.stage.concessionario.dto;
 
 import java.util.Date;
 
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
 public class UtenteRequestDto {
+    @NotBlank(message = "Il codice fiscale è obbligatorio")
+    @Size(min = 16, max = 16, message = "Il codice fiscale deve essere di 16 caratteri")
     private String codiceFiscaleUtente;
+
+    @NotBlank(message = "Il nome è obbligatorio")
+    @Size(max = 50, message = "Il nome non può superare 50 caratteri")
     private String nome;
+
+    @NotBlank(message = "Il cognome è obbligatorio")
+    @Size(max = 50, message = "Il cognome non può superare 50 caratteri")
     private String cognome;
+
+    @NotNull(message = "La data di nascita è obbligatoria")
     private Date dataNascita;
+
+    @Size(max = 20, message = "Il telefono non può superare 20 caratteri")
     private String telefono;
+
+    @NotBlank(message = "L'email è obbligatoria")
+    @Email(message = "L'email non è valida")
+    @Size(max = 100, message = "L'email non può superare 100 caratteri")
     private String email;
+
+    @NotBlank(message = "L'indirizzo è obbligatorio")
+    @Size(max = 200, message = "L'indirizzo non può superare 200 caratteri")
     private String indirizzo;
 
     public UtenteRequestDto() {}
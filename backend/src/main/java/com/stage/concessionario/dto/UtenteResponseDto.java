@@ -10,6 +10,7 @@ public class UtenteResponseDto {
     private String telefono;
     private String email;
     private String indirizzo;
+    private long versione;
 
     public UtenteResponseDto() {}
 
@@ -68,4 +69,12 @@ public class UtenteResponseDto {
     public void setIndirizzo(String indirizzo) {
         this.indirizzo = indirizzo;
     }
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
 }
@@ -9,6 +9,8 @@ public class UtenteUpdateDto {
     private String telefono;
     private String email;
     private String indirizzo;
+    // Versione letta dal client: se indicata deve coincidere con quella corrente, altrimenti 409
+    private Long versione;
 
     public UtenteUpdateDto() {}
 
@@ -59,4 +61,12 @@ public class UtenteUpdateDto {
     public void setIndirizzo(String indirizzo) {
         this.indirizzo = indirizzo;
     }
+
+    public Long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(Long versione) {
+        this.versione = versione;
+    }
 }
@@ -1,10 +1,27 @@
 package com.stage.concessionario.dto;
 
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
 public class VeicoloRequestDto {
+    @NotBlank(message = "Il numero di telaio è obbligatorio")
+    @Size(max = 17, message = "Il numero di telaio non può superare 17 caratteri")
     private String numeroTelaio;
+
+    @NotBlank(message = "La marca è obbligatoria")
+    @Size(max = 50, message = "La marca non può superare 50 caratteri")
     private String marca;
+
+    @NotBlank(message = "Il modello è obbligatorio")
+    @Size(max = 50, message = "Il modello non può superare 50 caratteri")
     private String modello;
+
+    @Positive(message = "L'anno di immatricolazione deve essere positivo")
     private int annoImmatricolazione;
+
+    @PositiveOrZero(message = "Il chilometraggio non può essere negativo")
     private int chilometraggio;
     private boolean disponibile;
     private Integer idConfigurazione;
@@ -8,6 +8,7 @@ public class VeicoloResponseDto {
     private int chilometraggio;
     private boolean disponibile;
     private ConfigurazioneResponseDto configurazione;
+    private long versione;
 
     public VeicoloResponseDto() {}
 
@@ -66,4 +67,12 @@ public class VeicoloResponseDto {
     public void setConfigurazione(ConfigurazioneResponseDto configurazione) {
         this.configurazione = configurazione;
     }
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
 }
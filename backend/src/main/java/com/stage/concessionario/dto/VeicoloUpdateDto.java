@@ -7,6 +7,8 @@ public class VeicoloUpdateDto {
     private int chilometraggio;
     private boolean disponibile;
     private Integer idConfigurazione;
+    // Versione letta dal client: se indicata deve coincidere con quella corrente, altrimenti 409
+    private Long versione;
 
     public VeicoloUpdateDto() {}
 
@@ -57,4 +59,12 @@ public class VeicoloUpdateDto {
     public void setIdConfigurazione(Integer idConfigurazione) {
         this.idConfigurazione = idConfigurazione;
     }
+
+    public Long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(Long versione) {
+        this.versione = versione;
+    }
 }
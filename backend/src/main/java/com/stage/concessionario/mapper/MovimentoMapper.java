@@ -29,6 +29,7 @@ public class MovimentoMapper {
         dto.setTipoMovimento(movimento.getTipoMovimento());
         dto.setPrezzo(movimento.getPrezzo());
         dto.setDataMovimento(movimento.getDataMovimento());
+        dto.setVersione(movimento.getVersione());
         
         // Gestione comproprietà
         dto.setHasComproprietario(movimento.isHasComproprietario());
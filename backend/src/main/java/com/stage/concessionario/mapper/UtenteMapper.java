@@ -22,6 +22,7 @@ public class UtenteMapper {
         dto.setTelefono(utente.getTelefono());
         dto.setEmail(utente.getEmail());
         dto.setIndirizzo(utente.getIndirizzo());
+        dto.setVersione(utente.getVersione());
         return dto;
     }
 
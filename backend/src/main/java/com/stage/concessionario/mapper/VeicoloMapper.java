@@ -4,8 +4,7 @@ import com.stage.concessionario.dto.VeicoloResponseDto;
 import com.stage.concessionario.dto.VeicoloRequestDto;
 import com.stage.concessionario.dto.VeicoloUpdateDto;
 import com.stage.concessionario.model.Veicolo;
-import com.stage.concessionario.model.Configurazione;
-import com.stage.concessionario.repository.ConfigurazioneRepository;
+import com.stage.concessionario.service.CacheConfigurazioniService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -14,10 +13,7 @@ import org.springframework.stereotype.Component;
 public class VeicoloMapper {
 
     @Autowired
-    private ConfigurazioneMapper configurazioneMapper;
-    
-    @Autowired
-    private ConfigurazioneRepository configurazioneRepository;
+    private CacheConfigurazioniService cacheConfigurazioni;
 
     public VeicoloResponseDto toDto(Veicolo veicolo) {
         if (veicolo == null) {
@@ -31,9 +27,12 @@ public class VeicoloMapper {
         dto.setAnnoImmatricolazione(veicolo.getAnnoImmatricolazione());
         dto.setChilometraggio(veicolo.getChilometraggio());
         dto.setDisponibile(veicolo.isDisponibile());
+        dto.setVersione(veicolo.getVersione());
         
+        // Dal proxy LAZY si legge solo l'ID, il resto arriva dalla cache
         if (veicolo.getConfigurazione() != null) {
-            dto.setConfigurazione(configurazioneMapper.toDto(veicolo.getConfigurazione()));
+            cacheConfigurazioni.perId(veicolo.getConfigurazione().getIdConfigurazione())
+                .ifPresent(dto::setConfigurazione);
         }
         
         return dto;
@@ -53,7 +52,7 @@ public class VeicoloMapper {
         veicolo.setDisponibile(dto.isDisponibile());
         
         if (dto.getIdConfigurazione() != null) {
-            configurazioneRepository.findById(dto.getIdConfigurazione())
+            cacheConfigurazioni.riferimentoPerId(dto.getIdConfigurazione())
                 .ifPresent(veicolo::setConfigurazione);
         }
         
@@ -72,7 +71,7 @@ public class VeicoloMapper {
         veicolo.setDisponibile(dto.isDisponibile());
         
         if (dto.getIdConfigurazione() != null) {
-            configurazioneRepository.findById(dto.getIdConfigurazione())
+            cacheConfigurazioni.riferimentoPerId(dto.getIdConfigurazione())
                 .ifPresent(veicolo::setConfigurazione);
         }
     }
@@ -1,12 +1,17 @@
 package com.stage.concessionario.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.Size;
 import java.io.Serializable;
 import java.util.List;
 
 @Entity
-@Table(name = "amministratore", schema = "concessionario")
+@Table(name = "amministratore", schema = "concessionario", indexes = {
+        @Index(name = "idx_amministratore_email", columnList = "email")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "amministratore")
 public class Amministratore implements Serializable {
 
     @Id
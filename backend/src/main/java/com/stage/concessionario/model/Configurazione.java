@@ -1,16 +1,24 @@
 package com.stage.concessionario.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.Size;
 import java.io.Serializable;
 import java.util.List;
 
 @Entity
-@Table(name = "configurazione")
+@Table(name = "configurazione", indexes = {
+        @Index(name = "idx_configurazione_nome", columnList = "nome_configurazione")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "configurazione")
 public class Configurazione implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "configurazione_id")
+    @TableGenerator(name = "configurazione_id", table = GeneratoriId.TABELLA,
+            pkColumnName = GeneratoriId.COLONNA_NOME, valueColumnName = GeneratoriId.COLONNA_VALORE,
+            pkColumnValue = GeneratoriId.CONFIGURAZIONE, allocationSize = GeneratoriId.ALLOCAZIONE)
     private int idConfigurazione;
 
     @Column(name = "nome_configurazione", nullable = false)
@@ -0,0 +1,39 @@
+package com.stage.concessionario.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Contatore di modifica di una tabella (vedi ContatoriModificheService): è incrementato dopo il
+ * commit di ogni scrittura ed è condiviso da tutti i nodi.
+ */
+@Entity
+@Table(name = "contatore_modifiche")
+public class ContatoreModifiche implements Serializable {
+
+    // Nome della costante di ContatoriModificheService.Tabella
+    @Id
+    @Column(name = "tabella", length = 30)
+    private String tabella;
+
+    @Column(name = "valore", nullable = false)
+    private long valore;
+
+    public ContatoreModifiche() {}
+
+    public String getTabella() {
+        return tabella;
+    }
+
+    public void setTabella(String tabella) {
+        this.tabella = tabella;
+    }
+
+    public long getValore() {
+        return valore;
+    }
+
+    public void setValore(long valore) {
+        this.valore = valore;
+    }
+}
@@ -0,0 +1,21 @@
+package com.stage.concessionario.model;
+
+/**
+ * Parametri comuni dei generatori di ID a tabella usati da Movimento e Configurazione.
+ * Ogni nodo riserva ALLOCAZIONE valori con un solo UPDATE sulla riga del proprio segmento
+ * (ottimizzatore pooled-lo): gli inserimenti non dipendono più dall'AUTO_INCREMENT
+ * e possono essere raggruppati in batch JDBC.
+ */
+public final class GeneratoriId {
+
+    public static final String TABELLA = "generatore_id";
+    public static final String COLONNA_NOME = "nome_sequenza";
+    public static final String COLONNA_VALORE = "prossimo_valore";
+    // Valori riservati per ogni accesso alla tabella; quelli non usati da un nodo che si ferma vanno persi
+    public static final int ALLOCAZIONE = 50;
+
+    public static final String MOVIMENTO = "movimento";
+    public static final String CONFIGURAZIONE = "configurazione";
+
+    private GeneratoriId() {}
+}
@@ -5,29 +5,39 @@ import java.io.Serializable;
 import java.util.Date;
 
 @Entity
-@Table(name = "movimento")
+@Table(name = "movimento", indexes = {
+        @Index(name = "idx_movimento_data", columnList = "data_movimento, id_movimento"),
+        @Index(name = "idx_movimento_tipo_data", columnList = "tipo_movimento, data_movimento, id_movimento"),
+        @Index(name = "idx_movimento_utente_tipo", columnList = "codice_fiscale_utente, tipo_movimento"),
+        @Index(name = "idx_movimento_comproprietario", columnList = "codice_fiscale_comproprietario"),
+        @Index(name = "idx_movimento_veicolo_data", columnList = "numero_telaio, data_movimento"),
+        @Index(name = "idx_movimento_veicolo_tipo", columnList = "numero_telaio, tipo_movimento")
+})
 public class Movimento implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "movimento_id")
+    @TableGenerator(name = "movimento_id", table = GeneratoriId.TABELLA,
+            pkColumnName = GeneratoriId.COLONNA_NOME, valueColumnName = GeneratoriId.COLONNA_VALORE,
+            pkColumnValue = GeneratoriId.MOVIMENTO, allocationSize = GeneratoriId.ALLOCAZIONE)
     private int idMovimento;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "codice_fiscale_amministratore")
     private Amministratore amministratore;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "codice_fiscale_utente", nullable = false)
     private Utente utente;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "codice_fiscale_comproprietario")
     private Utente comproprietario;
 
     @Column(name = "has_comproprietario")
     private boolean hasComproprietario = false;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "numero_telaio", nullable = false)
     private Veicolo veicolo;
 
@@ -44,6 +54,12 @@ public class Movimento implements Serializable {
     @Column(name = "prezzo_per_proprietario")
     private Double prezzoPerProprietario;
 
+    // Controllo di concorrenza ottimistico: ogni aggiornamento incrementa la versione e fallisce
+    // se nel frattempo la riga è stata modificata da un'altra richiesta
+    @Version
+    @Column(name = "versione", nullable = false)
+    private long versione;
+
     public Movimento() {
     }
 
@@ -126,4 +142,12 @@ public class Movimento implements Serializable {
     public void setAmministratore(Amministratore amministratore) {
         this.amministratore = amministratore;
     }
-}
\ No newline at end of file
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+}
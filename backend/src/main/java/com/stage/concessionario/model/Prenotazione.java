@@ -0,0 +1,74 @@
+package com.stage.concessionario.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Copia persistente delle prenotazioni attive, scritta in modo asincrono da PrenotazioniService
+ * e riletta all'avvio: il registro in memoria resta la fonte di verità durante l'esecuzione.
+ */
+@Entity
+@Table(name = "prenotazione", indexes = {
+        @Index(name = "idx_prenotazione_scadenza", columnList = "scadenza")
+})
+public class Prenotazione implements Serializable {
+
+    @Id
+    @Column(name = "numero_telaio", length = 17)
+    private String numeroTelaio;
+
+    @Column(name = "titolare", nullable = false, length = 100)
+    private String titolare;
+
+    @Column(name = "nota", length = 200)
+    private String nota;
+
+    @Column(name = "creata", nullable = false)
+    private Date creata;
+
+    @Column(name = "scadenza", nullable = false)
+    private Date scadenza;
+
+    public Prenotazione() {}
+
+    public String getNumeroTelaio() {
+        return numeroTelaio;
+    }
+
+    public void setNumeroTelaio(String numeroTelaio) {
+        this.numeroTelaio = numeroTelaio;
+    }
+
+    public String getTitolare() {
+        return titolare;
+    }
+
+    public void setTitolare(String titolare) {
+        this.titolare = titolare;
+    }
+
+    public String getNota() {
+        return nota;
+    }
+
+    public void setNota(String nota) {
+        this.nota = nota;
+    }
+
+    public Date getCreata() {
+        return creata;
+    }
+
+    public void setCreata(Date creata) {
+        this.creata = creata;
+    }
+
+    public Date getScadenza() {
+        return scadenza;
+    }
+
+    public void setScadenza(Date scadenza) {
+        this.scadenza = scadenza;
+    }
+}
@@ -0,0 +1,91 @@
+package com.stage.concessionario.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Prima risposta inviata per una chiave di idempotenza (header Idempotency-Key), conservata per
+ * ripeterla ai duplicati arrivati dopo un riavvio o dopo l'uscita della chiave dalla cache in memoria.
+ */
+@Entity
+@Table(name = "risposta_idempotente", indexes = {
+        @Index(name = "idx_risposta_idempotente_creata", columnList = "creata")
+})
+public class RispostaIdempotente implements Serializable {
+
+    public static final int MAX_CORPO = 1_000_000;
+    // Stato della riga segnaposto inserita all'arrivo della prima richiesta, prima della risposta
+    public static final int STATO_IN_CORSO = 0;
+
+    // SHA-256 di metodo, percorso, utente e chiave inviata dal client
+    @Id
+    @Column(name = "chiave", length = 64)
+    private String chiave;
+
+    // SHA-256 del corpo della richiesta, per riconoscere una chiave riusata con dati diversi
+    @Column(name = "impronta", nullable = false, length = 64)
+    private String impronta;
+
+    @Column(name = "stato", nullable = false)
+    private int stato;
+
+    @Column(name = "tipo_contenuto", length = 100)
+    private String tipoContenuto;
+
+    @Column(name = "corpo", length = MAX_CORPO)
+    private byte[] corpo;
+
+    @Column(name = "creata", nullable = false)
+    private Date creata;
+
+    public RispostaIdempotente() {}
+
+    public String getChiave() {
+        return chiave;
+    }
+
+    public void setChiave(String chiave) {
+        this.chiave = chiave;
+    }
+
+    public String getImpronta() {
+        return impronta;
+    }
+
+    public void setImpronta(String impronta) {
+        this.impronta = impronta;
+    }
+
+    public int getStato() {
+        return stato;
+    }
+
+    public void setStato(int stato) {
+        this.stato = stato;
+    }
+
+    public String getTipoContenuto() {
+        return tipoContenuto;
+    }
+
+    public void setTipoContenuto(String tipoContenuto) {
+        this.tipoContenuto = tipoContenuto;
+    }
+
+    public byte[] getCorpo() {
+        return corpo;
+    }
+
+    public void setCorpo(byte[] corpo) {
+        this.corpo = corpo;
+    }
+
+    public Date getCreata() {
+        return creata;
+    }
+
+    public void setCreata(Date creata) {
+        this.creata = creata;
+    }
+}
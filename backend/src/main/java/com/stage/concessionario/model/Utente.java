@@ -9,7 +9,13 @@ import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "utente")
+@Table(name = "utente", indexes = {
+        @Index(name = "idx_utente_cognome", columnList = "cognome"),
+        @Index(name = "idx_utente_nome_norm", columnList = "nome_norm"),
+        @Index(name = "idx_utente_cognome_norm", columnList = "cognome_norm"),
+        @Index(name = "idx_utente_email_norm", columnList = "email_norm"),
+        @Index(name = "idx_utente_email", columnList = "email")
+})
 public class Utente implements Serializable {
 
     @Id
@@ -40,10 +46,33 @@ public class Utente implements Serializable {
     @Size(min = 1, max = 200)
     private String indirizzo;
 
+    // Colonne generate in minuscolo usate dalla ricerca per prefisso case-insensitive:
+    // sono calcolate dal database e indicizzate, quindi non vanno mai scritte dall'applicazione
+    @Column(name = "nome_norm", insertable = false, updatable = false,
+            columnDefinition = "varchar(50) generated always as (lower(nome))")
+    @JsonIgnore
+    private String nomeNorm;
+
+    @Column(name = "cognome_norm", insertable = false, updatable = false,
+            columnDefinition = "varchar(50) generated always as (lower(cognome))")
+    @JsonIgnore
+    private String cognomeNorm;
+
+    @Column(name = "email_norm", insertable = false, updatable = false,
+            columnDefinition = "varchar(100) generated always as (lower(email))")
+    @JsonIgnore
+    private String emailNorm;
+
     @OneToMany(mappedBy = "utente")
     @JsonIgnore
     private List<Movimento> movimenti;
 
+    // Controllo di concorrenza ottimistico: ogni aggiornamento incrementa la versione e fallisce
+    // se nel frattempo la riga è stata modificata da un'altra richiesta
+    @Version
+    @Column(name = "versione", nullable = false)
+    private long versione;
+
     public Utente() {}
 
     public String getCodiceFiscaleUtente() {
@@ -101,4 +130,12 @@ public class Utente implements Serializable {
     public void setIndirizzo(String indirizzo) {
         this.indirizzo = indirizzo;
     }
-}
\ No newline at end of file
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+}
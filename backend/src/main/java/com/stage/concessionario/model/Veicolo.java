@@ -1,12 +1,23 @@
 package com.stage.concessionario.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.Size;
 import java.io.Serializable;
 import java.util.List;
 
 @Entity
-@Table(name = "veicolo")
+@Table(name = "veicolo", indexes = {
+        @Index(name = "idx_veicolo_marca", columnList = "marca"),
+        @Index(name = "idx_veicolo_modello", columnList = "modello"),
+        @Index(name = "idx_veicolo_marca_modello_norm", columnList = "marca_norm, modello_norm"),
+        @Index(name = "idx_veicolo_modello_norm", columnList = "modello_norm"),
+        @Index(name = "idx_veicolo_disp_marca_modello", columnList = "disponibile, marca_norm, modello_norm"),
+        @Index(name = "idx_veicolo_disp_anno_km", columnList = "disponibile, anno_immatricolazione, chilometraggio"),
+        @Index(name = "idx_veicolo_configurazione", columnList = "id_configurazione")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "veicolo")
 public class Veicolo implements Serializable {
 
     @Id
@@ -30,13 +41,28 @@ public class Veicolo implements Serializable {
     @Column(name = "disponibile", nullable = false)
     private boolean disponibile = true;
 
-    @ManyToOne
+    // Colonne generate in minuscolo per la ricerca case-insensitive su marca e modello
+    @Column(name = "marca_norm", insertable = false, updatable = false,
+            columnDefinition = "varchar(50) generated always as (lower(marca))")
+    private String marcaNorm;
+
+    @Column(name = "modello_norm", insertable = false, updatable = false,
+            columnDefinition = "varchar(50) generated always as (lower(modello))")
+    private String modelloNorm;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_configurazione", nullable = false)
     private Configurazione configurazione;
 
     @OneToMany(mappedBy = "veicolo")
     private List<Movimento> movimenti;
 
+    // Controllo di concorrenza ottimistico: ogni aggiornamento incrementa la versione e fallisce
+    // se nel frattempo la riga è stata modificata da un'altra richiesta
+    @Version
+    @Column(name = "versione", nullable = false)
+    private long versione;
+
     public Veicolo() {}
 
     public String getNumeroTelaio() {
@@ -94,4 +120,12 @@ public class Veicolo implements Serializable {
     public void setConfigurazione(Configurazione configurazione) {
         this.configurazione = configurazione;
     }
-}
\ No newline at end of file
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+}
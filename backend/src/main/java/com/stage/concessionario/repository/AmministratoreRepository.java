@@ -1,13 +1,18 @@
 package com.stage.concessionario.repository;
 
 import com.stage.concessionario.model.Amministratore;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
 public interface AmministratoreRepository extends JpaRepository<Amministratore, String> {
+    // Risultato nella query cache: a ogni richiesta autenticata non si interroga il database
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<Amministratore> findByEmail(String email);
     
     // Utilizziamo l'email come username per l'autenticazione
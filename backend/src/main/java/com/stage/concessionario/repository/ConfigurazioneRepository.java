@@ -1,8 +1,12 @@
 package com.stage.concessionario.repository;
 import java.util.Optional;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import com.stage.concessionario.model.Configurazione;
 
 public interface ConfigurazioneRepository extends JpaRepository<Configurazione, Integer> {
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<Configurazione> findByNomeConfigurazione(String nomeConfigurazione);
 }
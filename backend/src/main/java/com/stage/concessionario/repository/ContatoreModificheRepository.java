@@ -0,0 +1,27 @@
+package com.stage.concessionario.repository;
+
+import java.util.Collection;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stage.concessionario.model.ContatoreModifiche;
+
+public interface ContatoreModificheRepository extends JpaRepository<ContatoreModifiche, String> {
+    // Sempre in una transazione propria: è chiamato dopo il commit della scrittura, quando le sue
+    // risorse sono ancora legate al thread e una propagazione REQUIRED vi parteciperebbe
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("UPDATE ContatoreModifiche c SET c.valore = c.valore + 1 WHERE c.tabella IN :tabelle")
+    int incrementa(@Param("tabelle") Collection<String> tabelle);
+
+    // L'INSERT fallisce se un altro nodo ha già creato la riga
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO contatore_modifiche (tabella, valore) VALUES (:tabella, :valore)", nativeQuery = true)
+    int inserisci(@Param("tabella") String tabella, @Param("valore") long valore);
+}
@@ -3,28 +3,55 @@ package com.stage.concessionario.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.stage.concessionario.dto.MovimentoResponseDto;
 import com.stage.concessionario.model.Movimento;
 
 @Repository
-public interface MovimentoRepository extends JpaRepository<Movimento, Integer> {
-    
+public interface MovimentoRepository extends JpaRepository<Movimento, Integer>, JpaSpecificationExecutor<Movimento>,
+        MovimentoRicercaRepository {
+
+    // Proiezione diretta su MovimentoResponseDto: una sola SELECT in join,
+    // senza entità gestite nel persistence context
+    String SELECT_DTO = "SELECT new com.stage.concessionario.dto.MovimentoResponseDto("
+            + "m.idMovimento, u.codiceFiscaleUtente, u.nome, u.cognome, "
+            + "v.numeroTelaio, v.marca, v.modello, m.dataMovimento, m.tipoMovimento, m.prezzo, "
+            + "m.hasComproprietario, c.codiceFiscaleUtente, c.nome, c.cognome, m.prezzoPerProprietario, m.versione) "
+            + "FROM Movimento m JOIN m.utente u JOIN m.veicolo v LEFT JOIN m.comproprietario c ";
+
+    @Query(value = SELECT_DTO, countQuery = "SELECT COUNT(m) FROM Movimento m")
+    Page<MovimentoResponseDto> findAllDto(Pageable pageable);
+
+    @Query(SELECT_DTO + "WHERE m.idMovimento = :id")
+    Optional<MovimentoResponseDto> findDtoById(@Param("id") Integer id);
+
+    @Query(SELECT_DTO + "WHERE u.codiceFiscaleUtente = :codiceFiscale ORDER BY m.idMovimento")
+    List<MovimentoResponseDto> findDtoByUtente(@Param("codiceFiscale") String codiceFiscale);
+
+    @Query(SELECT_DTO + "WHERE v.numeroTelaio = :numeroTelaio ORDER BY m.idMovimento")
+    List<MovimentoResponseDto> findDtoByVeicolo(@Param("numeroTelaio") String numeroTelaio);
+
     // Trova movimenti per l'utente in base al codice fiscale
     List<Movimento> findByUtente_CodiceFiscaleUtente(String codiceFiscaleUtente);
-    
+
     // Trova movimenti per il veicolo in base al numero telaio
     List<Movimento> findByVeicoloNumeroTelaio(String numeroTelaio);
-    
+
     // List<Movimento> findByTipoMovimento(TipoMovimento tipoMovimento);
-    
+
     // Trova movimenti per utente e tipo
     List<Movimento> findByUtenteCodiceFiscaleUtenteAndTipoMovimento(String codiceFiscaleUtente, String tipoMovimento);
-    
+
     // Trova movimenti per veicolo e tipo
     List<Movimento> findByVeicoloNumeroTelaioAndTipoMovimento(String numeroTelaio, String tipoMovimento);
-    
+
     // Trova l'ultimo movimento per un veicolo specifico
     Optional<Movimento> findByVeicolo_NumeroTelaioOrderByDataMovimentoDesc(String numeroTelaio);
-}
\ No newline at end of file
+}
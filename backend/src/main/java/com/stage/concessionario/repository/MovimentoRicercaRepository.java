@@ -0,0 +1,19 @@
+package com.stage.concessionario.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.stage.concessionario.dto.MovimentoResponseDto;
+import com.stage.concessionario.model.Movimento;
+
+/**
+ * Ricerca dei movimenti con filtri dinamici proiettata direttamente su MovimentoResponseDto,
+ * con le stesse colonne di MovimentoRepository.SELECT_DTO: una sola SELECT in join,
+ * senza entità gestite nel persistence context.
+ */
+public interface MovimentoRicercaRepository {
+
+    List<MovimentoResponseDto> cercaDto(Specification<Movimento> spec, Sort ordinamento, int limite);
+}
@@ -0,0 +1,55 @@
+package com.stage.concessionario.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import com.stage.concessionario.dto.MovimentoResponseDto;
+import com.stage.concessionario.model.Movimento;
+import com.stage.concessionario.model.Utente;
+import com.stage.concessionario.model.Veicolo;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+public class MovimentoRicercaRepositoryImpl implements MovimentoRicercaRepository {
+
+    private final EntityManager entityManager;
+
+    public MovimentoRicercaRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<MovimentoResponseDto> cercaDto(Specification<Movimento> spec, Sort ordinamento, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MovimentoResponseDto> query = cb.createQuery(MovimentoResponseDto.class);
+        Root<Movimento> m = query.from(Movimento.class);
+        Join<Movimento, Utente> u = m.join("utente");
+        Join<Movimento, Veicolo> v = m.join("veicolo");
+        // I filtri sul comproprietario riusano questa join (vedi MovimentoSpecifications)
+        Join<Movimento, Utente> c = m.join("comproprietario", JoinType.LEFT);
+
+        query.select(cb.construct(MovimentoResponseDto.class,
+                m.get("idMovimento"), u.get("codiceFiscaleUtente"), u.get("nome"), u.get("cognome"),
+                v.get("numeroTelaio"), v.get("marca"), v.get("modello"), m.get("dataMovimento"), m.get("tipoMovimento"),
+                m.get("prezzo"), m.get("hasComproprietario"), c.get("codiceFiscaleUtente"), c.get("nome"),
+                c.get("cognome"), m.get("prezzoPerProprietario"), m.get("versione")));
+        if (spec != null) {
+            Predicate predicato = spec.toPredicate(m, query, cb);
+            if (predicato != null) {
+                query.where(predicato);
+            }
+        }
+        query.orderBy(QueryUtils.toOrders(ordinamento, m, cb));
+
+        return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.stage.concessionario.repository;
+
+import java.util.Collection;
+import java.util.Date;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.stage.concessionario.model.Movimento;
+import com.stage.concessionario.model.TipoMovimento;
+import com.stage.concessionario.model.Utente;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Filtri dinamici per la ricerca dei movimenti.
+ * Ogni filtro restituisce null se il criterio non è specificato,
+ * così da poter essere combinato con Specification.where/and.
+ */
+public final class MovimentoSpecifications {
+
+    private MovimentoSpecifications() {}
+
+    public static Specification<Movimento> conTipo(TipoMovimento tipoMovimento) {
+        if (tipoMovimento == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("tipoMovimento"), tipoMovimento);
+    }
+
+    public static Specification<Movimento> conNumeroTelaio(String numeroTelaio) {
+        if (numeroTelaio == null || numeroTelaio.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.like(root.get("veicolo").get("numeroTelaio"), "%" + numeroTelaio + "%");
+    }
+
+    // Il codice fiscale può corrispondere al proprietario o al comproprietario
+    // (left join: i movimenti senza comproprietario non devono essere esclusi)
+    public static Specification<Movimento> conCodiceFiscale(String codiceFiscale) {
+        if (codiceFiscale == null || codiceFiscale.isEmpty()) {
+            return null;
+        }
+        String pattern = "%" + codiceFiscale + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(root.get("utente").get("codiceFiscaleUtente"), pattern),
+                cb.and(
+                        cb.isTrue(root.get("hasComproprietario")),
+                        cb.like(comproprietario(root).get("codiceFiscaleUtente"), pattern)));
+    }
+
+    // Varianti che ricevono le chiavi già risolte dall'indice a trigrammi
+    // e filtrano sulle colonne di join indicizzate invece di usare LIKE '%x%'
+    public static Specification<Movimento> conNumeroTelaioIn(Collection<String> numeriTelaio) {
+        return (root, query, cb) -> numeriTelaio.isEmpty()
+                ? cb.disjunction()
+                : root.get("veicolo").get("numeroTelaio").in(numeriTelaio);
+    }
+
+    public static Specification<Movimento> conCodiceFiscaleIn(Collection<String> codiciFiscali) {
+        return (root, query, cb) -> codiciFiscali.isEmpty()
+                ? cb.disjunction()
+                : cb.or(
+                        root.get("utente").get("codiceFiscaleUtente").in(codiciFiscali),
+                        cb.and(
+                                cb.isTrue(root.get("hasComproprietario")),
+                                comproprietario(root).get("codiceFiscaleUtente").in(codiciFiscali)));
+    }
+
+    // Riusa il left join sul comproprietario se la query lo ha già (es. la proiezione su DTO)
+    @SuppressWarnings("unchecked")
+    private static Join<Movimento, Utente> comproprietario(Root<Movimento> root) {
+        return root.getJoins().stream()
+                .filter(j -> j.getAttribute().getName().equals("comproprietario") && j.getJoinType() == JoinType.LEFT)
+                .map(j -> (Join<Movimento, Utente>) j)
+                .findFirst()
+                .orElseGet(() -> root.join("comproprietario", JoinType.LEFT));
+    }
+
+    public static Specification<Movimento> dataDa(Date dataInizio) {
+        if (dataInizio == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.<Date>get("dataMovimento"), dataInizio);
+    }
+
+    public static Specification<Movimento> dataA(Date dataFine) {
+        if (dataFine == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.<Date>get("dataMovimento"), dataFine);
+    }
+
+    /**
+     * Condizione di keyset per l'ordinamento (data_movimento DESC, id_movimento DESC):
+     * restituisce solo i movimenti che seguono la coppia (data, id) del cursore.
+     */
+    public static Specification<Movimento> dopoCursore(Date dataMovimento, Integer idMovimento) {
+        if (dataMovimento == null || idMovimento == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.<Date>get("dataMovimento"), dataMovimento),
+                cb.and(
+                        cb.equal(root.get("dataMovimento"), dataMovimento),
+                        cb.lessThan(root.<Integer>get("idMovimento"), idMovimento)));
+    }
+}
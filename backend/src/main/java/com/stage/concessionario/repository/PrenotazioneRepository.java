@@ -0,0 +1,7 @@
+package com.stage.concessionario.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import com.stage.concessionario.model.Prenotazione;
+
+public interface PrenotazioneRepository extends JpaRepository<Prenotazione, String> {
+}
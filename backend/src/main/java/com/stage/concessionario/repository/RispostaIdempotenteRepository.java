@@ -0,0 +1,37 @@
+package com.stage.concessionario.repository;
+
+import java.util.Date;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stage.concessionario.model.RispostaIdempotente;
+
+public interface RispostaIdempotenteRepository extends JpaRepository<RispostaIdempotente, String> {
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RispostaIdempotente r WHERE r.creata < :limite")
+    int eliminaCreatePrima(@Param("limite") Date limite);
+
+    // Segnaposto della richiesta in corso (stato 0): l'INSERT fallisce se la chiave è già registrata,
+    // anche da un altro nodo
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO risposta_idempotente (chiave, impronta, stato, creata) VALUES (:chiave, :impronta, 0, :creata)",
+            nativeQuery = true)
+    int inserisciInCorso(@Param("chiave") String chiave, @Param("impronta") String impronta, @Param("creata") Date creata);
+
+    // Subentra a un segnaposto rimasto da una richiesta interrotta (ad esempio per l'arresto del nodo)
+    @Transactional
+    @Modifying
+    @Query("UPDATE RispostaIdempotente r SET r.creata = :adesso WHERE r.chiave = :chiave AND r.stato = 0 AND r.creata < :limite")
+    int riprendiInCorso(@Param("chiave") String chiave, @Param("adesso") Date adesso, @Param("limite") Date limite);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RispostaIdempotente r WHERE r.chiave = :chiave AND r.stato = 0")
+    int eliminaInCorso(@Param("chiave") String chiave);
+}
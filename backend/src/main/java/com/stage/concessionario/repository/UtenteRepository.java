@@ -1,13 +1,18 @@
 package com.stage.concessionario.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.stage.concessionario.model.Utente;
 
-public interface UtenteRepository extends JpaRepository<Utente, String> {
+public interface UtenteRepository extends JpaRepository<Utente, String>, JpaSpecificationExecutor<Utente> {
     Optional<Utente> findByCodiceFiscaleUtente(String codiceFiscaleUtente);
-    List<Utente> findByNomeContainingIgnoreCase(String nome);
-    List<Utente> findByCognomeContainingIgnoreCase(String cognome);
-    List<Utente> findByEmailContainingIgnoreCase(String email);
+    @Query("SELECT u.codiceFiscaleUtente FROM Utente u")
+    List<String> findAllCodiciFiscali();
+    @Query("SELECT u.codiceFiscaleUtente FROM Utente u WHERE u.codiceFiscaleUtente IN :codiciFiscali")
+    List<String> findCodiciFiscaliEsistenti(@Param("codiciFiscali") Collection<String> codiciFiscali);
 }
@@ -0,0 +1,42 @@
+package com.stage.concessionario.repository;
+
+import java.util.Locale;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.stage.concessionario.model.Utente;
+
+/**
+ * Filtri per la ricerca dei clienti.
+ * Il confronto è per prefisso sulle colonne normalizzate in minuscolo (nome_norm, cognome_norm, email_norm),
+ * così che la condizione LIKE 'valore%' possa usare i rispettivi indici.
+ */
+public final class UtenteSpecifications {
+
+    private UtenteSpecifications() {}
+
+    public static Specification<Utente> nomeIniziaCon(String nome) {
+        return iniziaCon("nomeNorm", nome);
+    }
+
+    public static Specification<Utente> cognomeIniziaCon(String cognome) {
+        return iniziaCon("cognomeNorm", cognome);
+    }
+
+    public static Specification<Utente> emailIniziaCon(String email) {
+        return iniziaCon("emailNorm", email);
+    }
+
+    private static Specification<Utente> iniziaCon(String attributo, String valore) {
+        if (valore == null || valore.trim().isEmpty()) {
+            return null;
+        }
+        String prefisso = escapeLike(valore.trim().toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(root.get(attributo), prefisso, '\\');
+    }
+
+    // I caratteri jolly inseriti dall'utente vanno cercati letteralmente
+    static String escapeLike(String valore) {
+        return valore.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
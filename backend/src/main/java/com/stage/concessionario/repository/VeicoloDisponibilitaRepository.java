@@ -0,0 +1,14 @@
+package com.stage.concessionario.repository;
+
+/**
+ * Aggiornamenti condizionati della disponibilità di un veicolo, eseguiti con un solo UPDATE nella
+ * transazione corrente. Restituiscono il numero di righe modificate: 0 se il veicolo non esiste o,
+ * per la vendita, non è più disponibile. Incrementano la versione, così un aggiornamento ottimistico
+ * basato su una lettura precedente fallisce.
+ */
+public interface VeicoloDisponibilitaRepository {
+
+    int segnaVenduto(String numeroTelaio);
+
+    int segnaDisponibile(String numeroTelaio);
+}
@@ -0,0 +1,58 @@
+package com.stage.concessionario.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.stage.concessionario.model.Veicolo;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Gli UPDATE passano da JDBC: un UPDATE JPQL o nativo farebbe svuotare a Hibernate l'intera regione
+// della cache di secondo livello, qui si rimuove solo la voce del veicolo modificato
+public class VeicoloDisponibilitaRepositoryImpl implements VeicoloDisponibilitaRepository {
+
+    private static final String SEGNA_VENDUTO = "UPDATE veicolo SET disponibile = false, versione = versione + 1 "
+            + "WHERE numero_telaio = ? AND disponibile = true";
+    private static final String SEGNA_DISPONIBILE = "UPDATE veicolo SET disponibile = true, versione = versione + 1 "
+            + "WHERE numero_telaio = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public VeicoloDisponibilitaRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public int segnaVenduto(String numeroTelaio) {
+        return aggiorna(SEGNA_VENDUTO, numeroTelaio);
+    }
+
+    @Override
+    public int segnaDisponibile(String numeroTelaio) {
+        return aggiorna(SEGNA_DISPONIBILE, numeroTelaio);
+    }
+
+    private int aggiorna(String sql, String numeroTelaio) {
+        int aggiornate = jdbcTemplate.update(sql, numeroTelaio);
+        if (aggiornate > 0) {
+            rimuoviDallaCache(numeroTelaio);
+            // Una lettura concorrente può aver rimesso in cache lo stato precedente prima del commit
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        rimuoviDallaCache(numeroTelaio);
+                    }
+                });
+            }
+        }
+        return aggiornate;
+    }
+
+    private void rimuoviDallaCache(String numeroTelaio) {
+        entityManagerFactory.getCache().evict(Veicolo.class, numeroTelaio);
+    }
+}
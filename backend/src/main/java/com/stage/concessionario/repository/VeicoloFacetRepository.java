@@ -0,0 +1,17 @@
+package com.stage.concessionario.repository;
+
+import java.util.Map;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.stage.concessionario.model.Veicolo;
+
+/**
+ * Conteggi raggruppati sui veicoli che soddisfano un filtro,
+ * calcolati dal database con una GROUP BY per ogni attributo.
+ */
+public interface VeicoloFacetRepository {
+
+    // percorso: nome dell'attributo, eventualmente su un'associazione (es. "configurazione.nomeConfigurazione")
+    Map<Object, Long> contaPer(Specification<Veicolo> spec, String percorso);
+}
@@ -0,0 +1,56 @@
+package com.stage.concessionario.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.stage.concessionario.model.Veicolo;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+public class VeicoloFacetRepositoryImpl implements VeicoloFacetRepository {
+
+    private final EntityManager entityManager;
+
+    public VeicoloFacetRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Map<Object, Long> contaPer(Specification<Veicolo> spec, String percorso) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Veicolo> root = query.from(Veicolo.class);
+
+        // Le associazioni sono attraversate con join esplicite
+        String[] parti = percorso.split("\\.");
+        From<?, ?> from = root;
+        for (int i = 0; i < parti.length - 1; i++) {
+            from = from.join(parti[i]);
+        }
+        Expression<Object> valore = from.get(parti[parti.length - 1]);
+        Expression<Long> conteggio = cb.count(root);
+
+        query.multiselect(valore, conteggio).groupBy(valore).orderBy(cb.desc(conteggio), cb.asc(valore));
+        if (spec != null) {
+            Predicate predicato = spec.toPredicate(root, query, cb);
+            if (predicato != null) {
+                query.where(predicato);
+            }
+        }
+
+        Map<Object, Long> risultato = new LinkedHashMap<>();
+        for (Tuple riga : entityManager.createQuery(query).getResultList()) {
+            risultato.put(riga.get(0), riga.get(1, Long.class));
+        }
+        return risultato;
+    }
+}
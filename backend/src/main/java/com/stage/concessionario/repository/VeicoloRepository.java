@@ -1,15 +1,34 @@
 package com.stage.concessionario.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.stage.concessionario.model.Veicolo;
 
-public interface VeicoloRepository extends JpaRepository<Veicolo, String> {
-    List<Veicolo> findByMarcaAndModello(String marca, String modello);
-    List<Veicolo> findByMarca(String marca);
-    List<Veicolo> findByModello(String modello);
-    Optional<Veicolo> findByNumeroTelaio(String numeroTelaio);
-    List<Veicolo> findByNumeroTelaioContaining(String numeroTelaio);
+// La configurazione è LAZY: VeicoloMapper.toDto legge solo il suo ID
+// e risolve il resto da CacheConfigurazioniService, senza join
+public interface VeicoloRepository extends JpaRepository<Veicolo, String>, JpaSpecificationExecutor<Veicolo>,
+        VeicoloFacetRepository, VeicoloDisponibilitaRepository {
+    // Il numero di telaio è la chiave primaria: il lookup per ID passa dalla cache di secondo livello,
+    // una query derivata andrebbe sempre sul database
+    default Optional<Veicolo> findByNumeroTelaio(String numeroTelaio) {
+        return findById(numeroTelaio);
+    }
     List<Veicolo> findByDisponibileTrue();
+    @Query("SELECT v.numeroTelaio FROM Veicolo v")
+    List<String> findAllNumeriTelaio();
+    // Il telaio come memorizzato: la collation case-insensitive di MySQL fa trovare "ABC" anche cercando "abc "
+    @Query("SELECT v.numeroTelaio FROM Veicolo v WHERE v.numeroTelaio = :numeroTelaio")
+    Optional<String> findNumeroTelaioMemorizzato(@Param("numeroTelaio") String numeroTelaio);
+    @Query("SELECT v.numeroTelaio FROM Veicolo v WHERE v.numeroTelaio IN :numeriTelaio")
+    List<String> findNumeriTelaioEsistenti(@Param("numeriTelaio") Collection<String> numeriTelaio);
+    @Query("SELECT v.marca, COUNT(v) FROM Veicolo v GROUP BY v.marca")
+    List<Object[]> countByMarca();
+    @Query("SELECT v.modello, COUNT(v) FROM Veicolo v GROUP BY v.modello")
+    List<Object[]> countByModello();
 }
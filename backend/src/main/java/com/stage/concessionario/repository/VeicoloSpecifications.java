@@ -0,0 +1,80 @@
+package com.stage.concessionario.repository;
+
+import java.util.Collection;
+import java.util.Locale;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.stage.concessionario.model.Veicolo;
+
+/**
+ * Filtri per la ricerca dei veicoli.
+ * Marca e modello sono confrontati per prefisso sulle colonne normalizzate in minuscolo,
+ * gli intervalli su anno e chilometraggio sono inclusivi.
+ */
+public final class VeicoloSpecifications {
+
+    private VeicoloSpecifications() {}
+
+    // I numeri di telaio (VIN) sono memorizzati in maiuscolo
+    public static Specification<Veicolo> telaioContiene(String numeroTelaio) {
+        if (numeroTelaio == null || numeroTelaio.trim().isEmpty()) {
+            return null;
+        }
+        String pattern = "%" + UtenteSpecifications.escapeLike(numeroTelaio.trim().toUpperCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(root.get("numeroTelaio"), pattern, '\\');
+    }
+
+    // Candidati già risolti dall'indice a trigrammi: lookup sulla chiave primaria
+    public static Specification<Veicolo> telaioIn(Collection<String> numeriTelaio) {
+        return (root, query, cb) -> numeriTelaio.isEmpty()
+                ? cb.disjunction()
+                : root.get("numeroTelaio").in(numeriTelaio);
+    }
+
+    public static Specification<Veicolo> marcaIniziaCon(String marca) {
+        return iniziaCon("marcaNorm", marca);
+    }
+
+    public static Specification<Veicolo> modelloIniziaCon(String modello) {
+        return iniziaCon("modelloNorm", modello);
+    }
+
+    public static Specification<Veicolo> annoTra(Integer annoMin, Integer annoMax) {
+        return tra("annoImmatricolazione", annoMin, annoMax);
+    }
+
+    public static Specification<Veicolo> chilometraggioTra(Integer chilometraggioMin, Integer chilometraggioMax) {
+        return tra("chilometraggio", chilometraggioMin, chilometraggioMax);
+    }
+
+    public static Specification<Veicolo> disponibile(Boolean disponibile) {
+        if (disponibile == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("disponibile"), disponibile);
+    }
+
+    private static Specification<Veicolo> iniziaCon(String attributo, String valore) {
+        if (valore == null || valore.trim().isEmpty()) {
+            return null;
+        }
+        String prefisso = UtenteSpecifications.escapeLike(valore.trim().toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(root.get(attributo), prefisso, '\\');
+    }
+
+    private static Specification<Veicolo> tra(String attributo, Integer min, Integer max) {
+        if (min == null && max == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            if (min == null) {
+                return cb.lessThanOrEqualTo(root.get(attributo), max);
+            }
+            if (max == null) {
+                return cb.greaterThanOrEqualTo(root.get(attributo), min);
+            }
+            return cb.between(root.get(attributo), min, max);
+        };
+    }
+}
@@ -17,13 +17,20 @@ import java.util.Optional;
 public class AmministratoreDetailsService implements UserDetailsService {
 
     private final AmministratoreRepository amministratoreRepository;
+    private final CacheAmministratori cacheAmministratori;
 
-    public AmministratoreDetailsService(AmministratoreRepository amministratoreRepository) {
+    public AmministratoreDetailsService(AmministratoreRepository amministratoreRepository, CacheAmministratori cacheAmministratori) {
         this.amministratoreRepository = amministratoreRepository;
+        this.cacheAmministratori = cacheAmministratori;
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        UserDetails inCache = cacheAmministratori.getUserFromCache(email);
+        if (inCache != null) {
+            return inCache;
+        }
+
         Optional<Amministratore> amministratoreOpt = amministratoreRepository.findByEmail(email);
         
         if (amministratoreOpt.isEmpty()) {
@@ -32,10 +39,12 @@ public class AmministratoreDetailsService implements UserDetailsService {
         
         Amministratore amministratore = amministratoreOpt.get();
         
-        return new User(
+        UserDetails utente = new User(
             amministratore.getEmail(),
             amministratore.getPassword(),
             Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + amministratore.getRuolo()))
         );
+        cacheAmministratori.putUserInCache(utente);
+        return utente;
     }
 }
@@ -0,0 +1,73 @@
+package com.stage.concessionario.security;
+
+import java.time.Duration;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * UserCache limitata per AmministratoreDetailsService, con scadenza breve.
+ * Restituisce sempre una copia: dopo l'autenticazione Spring Security cancella la password
+ * dal principal e non deve cancellarla dall'istanza in cache.
+ */
+@Component
+public class CacheAmministratori implements UserCache {
+
+    private static final int MAX_AMMINISTRATORI = 500;
+    private static final Duration SCADENZA = Duration.ofMinutes(5);
+
+    private final Cache<String, UserDetails> perEmail;
+
+    public CacheAmministratori(MeterRegistry meterRegistry) {
+        this.perEmail = Caffeine.newBuilder()
+                .maximumSize(MAX_AMMINISTRATORI)
+                .expireAfterWrite(SCADENZA)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, perEmail, "amministratori.email");
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserDetails utente = perEmail.getIfPresent(username);
+        return utente == null ? null : User.withUserDetails(utente).build();
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        perEmail.put(user.getUsername(), User.withUserDetails(user).build());
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        if (username != null) {
+            perEmail.invalidate(username);
+        }
+    }
+
+    /**
+     * Rimuove l'utente subito e di nuovo al commit della transazione corrente, così un
+     * caricamento concorrente avvenuto prima del commit non lascia in cache i dati vecchi.
+     */
+    public void rimuoviDopoCommit(String username) {
+        removeUserFromCache(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUserFromCache(username);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.stage.concessionario.security;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Protegge la CPU dai tentativi di login ripetuti.
+ * Un tentativo è ammesso solo se sia il bucket dell'email sia quello dell'IP hanno un gettone;
+ * i gettoni sono consumati solo dai login falliti, quindi gli accessi riusciti non si avvicinano
+ * al limite. I bucket si ricaricano a velocità costante e sono aggiornati sotto lock a strisce,
+ * quindi chiavi diverse raramente si contendono lo stesso lock. Inoltre un semaforo limita
+ * i confronti BCrypt contemporanei: oltre il limite si risponde subito 429 invece di
+ * accodare lavoro che toglierebbe CPU al resto delle API.
+ */
+@Component
+public class LimitatoreLogin {
+
+    private static final int NUMERO_STRISCE = 64;
+    private static final int MAX_BUCKET = 100_000;
+
+    private final Object[] strisce = new Object[NUMERO_STRISCE];
+    private final Cache<String, Bucket> bucket;
+    private final int capacitaEmail;
+    private final int capacitaIp;
+    private final long nanosPerGettone;
+    private final Semaphore hashConcorrenti;
+    private static final Logger logger = LogManager.getLogger(LimitatoreLogin.class);
+
+    public enum Esito { CONSENTITO, TROPPI_TENTATIVI, SERVER_OCCUPATO }
+
+    private static final class Bucket {
+        private double gettoni;
+        private long ultimaRicarica;
+
+        private Bucket(int capacita, long adesso) {
+            this.gettoni = capacita;
+            this.ultimaRicarica = adesso;
+        }
+    }
+
+    public LimitatoreLogin(@Value("${security.login.tentativi-per-email:5}") int capacitaEmail,
+            @Value("${security.login.tentativi-per-ip:20}") int capacitaIp,
+            @Value("${security.login.ricarica:PT12S}") Duration ricarica,
+            @Value("${security.login.hash-concorrenti:0}") int hashConcorrenti) {
+        for (int i = 0; i < NUMERO_STRISCE; i++) {
+            strisce[i] = new Object();
+        }
+        this.capacitaEmail = capacitaEmail;
+        this.capacitaIp = capacitaIp;
+        this.nanosPerGettone = ricarica.toNanos();
+        // Di default metà dei core: l'altra metà resta alle richieste normali
+        int permessi = hashConcorrenti > 0 ? hashConcorrenti : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashConcorrenti = new Semaphore(permessi);
+        // I bucket inattivi sono di nuovo pieni: si possono scartare
+        this.bucket = Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKET)
+                .expireAfterAccess(ricarica.multipliedBy(Math.max(capacitaEmail, capacitaIp)))
+                .build();
+    }
+
+    /**
+     * Verifica senza consumarli che email e IP abbiano un gettone e, se entrambi disponibili, acquisisce
+     * un permesso di hash. Con esito CONSENTITO il chiamante deve invocare {@link #rilascia()} al termine
+     * e {@link #fallito(String, String)} se le credenziali sono errate.
+     */
+    public Esito tentativo(String email, String ip) {
+        String chiaveEmail = chiaveEmail(email);
+        // Entrambi i bucket sono controllati prima di consumare: un IP già bloccato non continua
+        // a consumare i gettoni dell'email, che bloccherebbe l'account anche al suo proprietario
+        if (!disponibile(chiaveEmail, capacitaEmail) || !disponibile(chiaveIp(ip), capacitaIp)) {
+            logger.warn("Troppi tentativi di login per {} da {}", chiaveEmail, ip);
+            return Esito.TROPPI_TENTATIVI;
+        }
+        if (!hashConcorrenti.tryAcquire()) {
+            return Esito.SERVER_OCCUPATO;
+        }
+        return Esito.CONSENTITO;
+    }
+
+    // Login fallito: consuma un gettone sia per l'email sia per l'IP, così un IP che prova molte email
+    // diverse esaurisce il proprio bucket
+    public void fallito(String email, String ip) {
+        consuma(chiaveEmail(email), capacitaEmail);
+        consuma(chiaveIp(ip), capacitaIp);
+    }
+
+    public void rilascia() {
+        hashConcorrenti.release();
+    }
+
+    // Secondi dopo cui il client può riprovare (intestazione Retry-After)
+    public long secondiAttesa() {
+        return Math.max(1, Duration.ofNanos(nanosPerGettone).toSeconds());
+    }
+
+    private static String chiaveEmail(String email) {
+        return "email:" + (email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static String chiaveIp(String ip) {
+        return "ip:" + ip;
+    }
+
+    private boolean disponibile(String chiave, int capacita) {
+        Bucket b = bucket.getIfPresent(chiave);
+        if (b == null) {
+            return true;
+        }
+        synchronized (striscia(chiave)) {
+            ricarica(b, capacita, System.nanoTime());
+            return b.gettoni >= 1;
+        }
+    }
+
+    // I tentativi falliti concorrenti possono portare il bucket a zero, non sotto
+    private void consuma(String chiave, int capacita) {
+        long adesso = System.nanoTime();
+        Bucket b = bucket.get(chiave, k -> new Bucket(capacita, adesso));
+        synchronized (striscia(chiave)) {
+            ricarica(b, capacita, adesso);
+            b.gettoni = Math.max(0, b.gettoni - 1);
+        }
+    }
+
+    private void ricarica(Bucket b, int capacita, long adesso) {
+        double ricaricati = (double) (adesso - b.ultimaRicarica) / nanosPerGettone;
+        if (ricaricati > 0) {
+            b.gettoni = Math.min(capacita, b.gettoni + ricaricati);
+            b.ultimaRicarica = adesso;
+        }
+    }
+
+    private Object striscia(String chiave) {
+        return strisce[(chiave.hashCode() & 0x7fffffff) % NUMERO_STRISCE];
+    }
+}
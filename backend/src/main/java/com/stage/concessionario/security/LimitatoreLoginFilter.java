@@ -0,0 +1,56 @@
+package com.stage.concessionario.security;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Applica LimitatoreLogin al login via form (POST /login) prima che
+ * UsernamePasswordAuthenticationFilter esegua il confronto BCrypt. Se al ritorno il contesto
+ * non contiene un'autenticazione il login è fallito e consuma i gettoni.
+ */
+public class LimitatoreLoginFilter extends OncePerRequestFilter {
+
+    private final LimitatoreLogin limitatoreLogin;
+
+    public LimitatoreLoginFilter(LimitatoreLogin limitatoreLogin) {
+        this.limitatoreLogin = limitatoreLogin;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("POST".equals(request.getMethod())
+                && request.getRequestURI().equals(request.getContextPath() + "/login"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String email = request.getParameter("username");
+        LimitatoreLogin.Esito esito = limitatoreLogin.tentativo(email, request.getRemoteAddr());
+        if (esito != LimitatoreLogin.Esito.CONSENTITO) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limitatoreLogin.secondiAttesa()));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+            // In caso di errore UsernamePasswordAuthenticationFilter svuota il contesto
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication == null || !authentication.isAuthenticated()) {
+                limitatoreLogin.fallito(email, request.getRemoteAddr());
+            }
+        } finally {
+            limitatoreLogin.rilascia();
+        }
+    }
+}
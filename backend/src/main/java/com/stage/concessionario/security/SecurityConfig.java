@@ -3,19 +3,33 @@ package com.stage.concessionario.security;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.csrf.CsrfFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.stage.concessionario.config.IdempotenzaFilter;
+import com.stage.concessionario.service.IdempotenzaService;
+
+import jakarta.servlet.http.HttpServletRequest;
+
 import java.util.Arrays;
 
 @Configuration
@@ -23,16 +37,61 @@ import java.util.Arrays;
 @EnableMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
 
+    /**
+     * Catena per le API REST: l'identità arriva dal token firmato verificato da
+     * TokenAuthenticationFilter oppure, per le pagine Thymeleaf, dalla sessione del login
+     * già esistente (le API non ne creano). Le scritture autenticate dalla sessione richiedono
+     * il token CSRF, come nella catena delle pagine; quelle con il token firmato no, perché
+     * l'header Authorization non viene inviato dal browser in automatico. Gli endpoint restano
+     * accessibili senza autenticazione, quelli amministrativi sono protetti con @PreAuthorize.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http, TokenService tokenService,
+            IdempotenzaService idempotenzaService) throws Exception {
+        http
+            .securityMatcher("/api/**", "/veicoli/api/**")
+            .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .authorizeHttpRequests(authorize -> authorize
+                .anyRequest().permitAll()
+            )
+            .securityContext(context -> context.securityContextRepository(sessioneInSolaLettura()))
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.NEVER))
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
+            )
+            .csrf(csrf -> csrf.requireCsrfProtectionMatcher(request ->
+                CsrfFilter.DEFAULT_CSRF_MATCHER.matches(request)
+                    && request.getSession(false) != null
+                    && !conTokenFirmato(request)))
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+            // Dopo l'autenticazione: le chiavi di idempotenza sono separate per utente
+            .addFilterAfter(new IdempotenzaFilter(idempotenzaService), TokenAuthenticationFilter.class);
+
+        return http.build();
+    }
+
+    // Legge il contesto salvato dal login delle pagine, senza creare sessioni né salvarvi i token
+    private static HttpSessionSecurityContextRepository sessioneInSolaLettura() {
+        HttpSessionSecurityContextRepository repository = new HttpSessionSecurityContextRepository();
+        repository.setAllowSessionCreation(false);
+        return repository;
+    }
+
+    // Un token non valido è respinto con 401 da TokenAuthenticationFilter
+    private static boolean conTokenFirmato(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return header != null && header.startsWith("Bearer ");
+    }
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, LimitatoreLogin limitatoreLogin) throws Exception {
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .addFilterBefore(new LimitatoreLoginFilter(limitatoreLogin), UsernamePasswordAuthenticationFilter.class)
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/css/**", "/js/**", "/images/**", "/webjars/**").permitAll()
                 .requestMatchers("/login", "/error").permitAll()
-                .requestMatchers("/api/auth/login").permitAll()
-                .requestMatchers("/api/**").permitAll()
-                .requestMatchers("/veicoli/api/**").permitAll()
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
@@ -45,9 +104,7 @@ public class SecurityConfig {
                 .logoutSuccessUrl("/login?logout")
                 .permitAll()
             )
-            .csrf(csrf -> csrf
-                .ignoringRequestMatchers("/api/**", "/veicoli/api/**", "/api/auth/login")
-            );
+            .csrf(Customizer.withDefaults());
         
         return http.build();
     }
@@ -80,16 +137,15 @@ public class SecurityConfig {
      */
     @Bean
     @Profile("prod")
-    public SecurityFilterChain productionSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain productionSecurityFilterChain(HttpSecurity http, LimitatoreLogin limitatoreLogin) throws Exception {
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .addFilterBefore(new LimitatoreLoginFilter(limitatoreLogin), UsernamePasswordAuthenticationFilter.class)
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/css/**", "/js/**", "/images/**", "/webjars/**", "/static/**").permitAll()
                 .requestMatchers("/*.js", "/*.json", "/*.ico", "/favicon.ico", "/asset-manifest.json", "/manifest.json").permitAll()
                 .requestMatchers("/login", "/error").permitAll()
-                // Tutti gli endpoint API sono accessibili senza autenticazione
-                .requestMatchers("/api/**").permitAll()
-                .requestMatchers("/veicoli/api/**").permitAll()
+                // Gli endpoint API sono gestiti da apiSecurityFilterChain
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
@@ -102,9 +158,7 @@ public class SecurityConfig {
                 .logoutSuccessUrl("/login?logout")
                 .permitAll()
             )
-            .csrf(csrf -> csrf
-                .ignoringRequestMatchers("/api/**", "/veicoli/api/**") // Disabilita CSRF per le API REST
-            );
+            .csrf(Customizer.withDefaults());
         
         return http.build();
     }
@@ -0,0 +1,181 @@
+package com.stage.concessionario.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Emissione e verifica dei token firmati HMAC-SHA256 (formato JWT compatto).
+ * Il token di accesso contiene utente e ruoli, quindi la verifica non richiede
+ * né sessione né accesso al database; il token di refresh serve solo a ottenere
+ * una nuova coppia di token da /api/auth/refresh.
+ * Tutti i nodi devono condividere lo stesso segreto (security.token.secret): senza un segreto
+ * valido l'applicazione non si avvia, tranne che con il profilo "test".
+ */
+@Service
+public class TokenService {
+
+    public static final String TIPO_ACCESSO = "access";
+    public static final String TIPO_REFRESH = "refresh";
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final int LUNGHEZZA_MINIMA_CHIAVE = 32;
+    private static final String PROFILO_TEST = "test";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String HEADER = ENCODER.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final SecretKeySpec chiave;
+    private final Duration durataAccesso;
+    private final Duration durataRefresh;
+    private final ObjectMapper objectMapper;
+    private static final Logger logger = LogManager.getLogger(TokenService.class);
+
+    public TokenService(@Value("${security.token.secret:}") String segreto,
+            @Value("${security.token.access-ttl:PT15M}") Duration durataAccesso,
+            @Value("${security.token.refresh-ttl:P7D}") Duration durataRefresh,
+            ObjectMapper objectMapper, Environment environment) {
+        byte[] byteChiave;
+        if ((segreto == null || segreto.isBlank()) && environment.acceptsProfiles(Profiles.of(PROFILO_TEST))) {
+            // Solo nei test: i token valgono per questa istanza e fino al riavvio
+            byteChiave = new byte[LUNGHEZZA_MINIMA_CHIAVE];
+            new SecureRandom().nextBytes(byteChiave);
+            logger.warn("security.token.secret non configurato: generato un segreto casuale per il profilo di test");
+        } else {
+            byteChiave = decodificaSegreto(segreto);
+        }
+        this.chiave = new SecretKeySpec(byteChiave, ALGORITMO);
+        this.durataAccesso = durataAccesso;
+        this.durataRefresh = durataRefresh;
+        this.objectMapper = objectMapper;
+    }
+
+    // Un segreto mancante o corto fermerebbe solo l'emissione dei token su alcuni nodi, oppure
+    // renderebbe i token di un nodo non validi sugli altri: meglio che l'avvio fallisca
+    private static byte[] decodificaSegreto(String segreto) {
+        if (segreto == null || segreto.isBlank()) {
+            throw new IllegalStateException("security.token.secret non configurato: impostare TOKEN_SECRET "
+                    + "con almeno " + LUNGHEZZA_MINIMA_CHIAVE + " byte in Base64");
+        }
+        byte[] byteChiave;
+        try {
+            byteChiave = Base64.getDecoder().decode(segreto.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("security.token.secret non è in Base64", e);
+        }
+        if (byteChiave.length < LUNGHEZZA_MINIMA_CHIAVE) {
+            throw new IllegalStateException("security.token.secret deve contenere almeno "
+                    + LUNGHEZZA_MINIMA_CHIAVE + " byte in Base64 (" + byteChiave.length + " configurati)");
+        }
+        return byteChiave;
+    }
+
+    public String emettiAccesso(String username, Collection<? extends GrantedAuthority> ruoli) {
+        return emetti(username, ruoli, TIPO_ACCESSO, durataAccesso);
+    }
+
+    public String emettiRefresh(String username) {
+        return emetti(username, List.of(), TIPO_REFRESH, durataRefresh);
+    }
+
+    public long getDurataAccessoSecondi() {
+        return durataAccesso.toSeconds();
+    }
+
+    /**
+     * Verifica un token di accesso e ne ricostruisce l'autenticazione.
+     * @return vuoto se la firma non è valida, il token è scaduto o non è di accesso
+     */
+    public Optional<Authentication> verificaAccesso(String token) {
+        return verifica(token, TIPO_ACCESSO).map(claims -> {
+            Object valoreRuoli = claims.get("roles");
+            List<SimpleGrantedAuthority> ruoli = valoreRuoli instanceof List<?> lista
+                    ? lista.stream().map(String::valueOf).map(SimpleGrantedAuthority::new).toList()
+                    : List.of();
+            return new UsernamePasswordAuthenticationToken((String) claims.get("sub"), null, ruoli);
+        });
+    }
+
+    // Restituisce l'utente del token di refresh, se valido
+    public Optional<String> verificaRefresh(String token) {
+        return verifica(token, TIPO_REFRESH).map(claims -> (String) claims.get("sub"));
+    }
+
+    private String emetti(String username, Collection<? extends GrantedAuthority> ruoli, String tipo, Duration durata) {
+        Instant adesso = Instant.now();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", username);
+        claims.put("typ", tipo);
+        claims.put("roles", ruoli.stream().map(GrantedAuthority::getAuthority).toList());
+        claims.put("iat", adesso.getEpochSecond());
+        claims.put("exp", adesso.plus(durata).getEpochSecond());
+        try {
+            String payload = ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+            String contenuto = HEADER + "." + payload;
+            return contenuto + "." + ENCODER.encodeToString(firma(contenuto));
+        } catch (Exception e) {
+            throw new IllegalStateException("Impossibile emettere il token", e);
+        }
+    }
+
+    private Optional<Map<String, Object>> verifica(String token, String tipo) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        String[] parti = token.split("\\.");
+        if (parti.length != 3 || !HEADER.equals(parti[0])) {
+            return Optional.empty();
+        }
+        try {
+            byte[] attesa = firma(parti[0] + "." + parti[1]);
+            if (!MessageDigest.isEqual(attesa, DECODER.decode(parti[2]))) {
+                return Optional.empty();
+            }
+            Map<String, Object> claims = objectMapper.readValue(DECODER.decode(parti[1]),
+                    new TypeReference<Map<String, Object>>() {});
+            Object scadenza = claims.get("exp");
+            if (!tipo.equals(claims.get("typ")) || !(claims.get("sub") instanceof String)
+                    || !(scadenza instanceof Number numero)
+                    || Instant.now().getEpochSecond() >= numero.longValue()) {
+                return Optional.empty();
+            }
+            return Optional.of(claims);
+        } catch (Exception e) {
+            logger.debug("Token non valido: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private byte[] firma(String contenuto) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITMO);
+        mac.init(chiave);
+        return mac.doFinal(contenuto.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -6,6 +6,7 @@ import com.stage.concessionario.mapper.AmministratoreMapper;
 import com.stage.concessionario.model.Amministratore;
 import com.stage.concessionario.repository.AmministratoreRepository;
 import com.stage.concessionario.security.AmministratoreSecurityService;
+import com.stage.concessionario.security.CacheAmministratori;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,14 +21,17 @@ public class AmministratoreService {
     private final AmministratoreRepository amministratoreRepository;
     private final AmministratoreMapper amministratoreMapper;
     private final AmministratoreSecurityService securityService;
+    private final CacheAmministratori cacheAmministratori;
 
     @Autowired
     public AmministratoreService(AmministratoreRepository amministratoreRepository, 
                                 AmministratoreMapper amministratoreMapper,
-                                AmministratoreSecurityService securityService) {
+                                AmministratoreSecurityService securityService,
+                                CacheAmministratori cacheAmministratori) {
         this.amministratoreRepository = amministratoreRepository;
         this.amministratoreMapper = amministratoreMapper;
         this.securityService = securityService;
+        this.cacheAmministratori = cacheAmministratori;
     }
 
     public List<AmministratoreResponseDTO> getAllAmministratori() {
@@ -61,8 +65,12 @@ public class AmministratoreService {
         
         if (amministratoreOptional.isPresent()) {
             Amministratore amministratore = amministratoreOptional.get();
+            // Email, password o ruolo possono cambiare: si rimuovono sia la vecchia che la nuova email
+            String emailPrecedente = amministratore.getEmail();
             amministratoreMapper.updateAmministratoreFromDtoInput(amministratoreDTO, amministratore);
             Amministratore updatedAmministratore = amministratoreRepository.save(amministratore);
+            cacheAmministratori.rimuoviDopoCommit(emailPrecedente);
+            cacheAmministratori.rimuoviDopoCommit(updatedAmministratore.getEmail());
             return amministratoreMapper.toDto(updatedAmministratore);
         }
         
@@ -71,8 +79,10 @@ public class AmministratoreService {
 
     @Transactional
     public boolean deleteAmministratore(String codiceFiscale) {
-        if (amministratoreRepository.existsById(codiceFiscale)) {
-            amministratoreRepository.deleteById(codiceFiscale);
+        Optional<Amministratore> amministratoreOptional = amministratoreRepository.findById(codiceFiscale);
+        if (amministratoreOptional.isPresent()) {
+            amministratoreRepository.delete(amministratoreOptional.get());
+            cacheAmministratori.rimuoviDopoCommit(amministratoreOptional.get().getEmail());
             return true;
         }
         return false;
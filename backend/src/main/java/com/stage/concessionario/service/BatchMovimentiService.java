@@ -0,0 +1,242 @@
+package com.stage.concessionario.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.stage.concessionario.dto.ImportReportDto;
+import com.stage.concessionario.dto.MovimentoRequestDto;
+import com.stage.concessionario.model.Movimento;
+import com.stage.concessionario.model.TipoMovimento;
+import com.stage.concessionario.model.Veicolo;
+import com.stage.concessionario.repository.MovimentoRepository;
+import com.stage.concessionario.repository.UtenteRepository;
+import com.stage.concessionario.repository.VeicoloRepository;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
+
+/**
+ * Inserimento di un lotto di movimenti (es. caricamento di fine mese dalla contabilità).
+ * Utenti e veicoli referenziati sono risolti con due query IN, le regole di disponibilità sono
+ * applicate in memoria in ordine cronologico e il lotto è scritto in una sola transazione,
+ * con INSERT e UPDATE raggruppati in batch JDBC: o tutti i movimenti vengono inseriti, o nessuno.
+ */
+@Service
+public class BatchMovimentiService {
+
+    private final MovimentoRepository movimentoRepository;
+    private final UtenteRepository utenteRepository;
+    private final VeicoloRepository veicoloRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheVeicoliService cacheVeicoli;
+    private final PrenotazioniService prenotazioniService;
+    private final ContatoriModificheService contatoriModifiche;
+    private final int maxMovimenti;
+    private static final Logger logger = LogManager.getLogger(BatchMovimentiService.class);
+
+    // Movimento del lotto con la sua posizione (1-based) nella richiesta
+    private record RigaMovimento(long riga, MovimentoRequestDto movimento) {}
+
+    public BatchMovimentiService(MovimentoRepository movimentoRepository, UtenteRepository utenteRepository,
+            VeicoloRepository veicoloRepository, TransactionTemplate transactionTemplate,
+            CacheVeicoliService cacheVeicoli, PrenotazioniService prenotazioniService,
+            ContatoriModificheService contatoriModifiche,
+            @Value("${movimenti.batch.max-movimenti:5000}") int maxMovimenti) {
+        this.movimentoRepository = movimentoRepository;
+        this.utenteRepository = utenteRepository;
+        this.veicoloRepository = veicoloRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheVeicoli = cacheVeicoli;
+        this.prenotazioniService = prenotazioniService;
+        this.contatoriModifiche = contatoriModifiche;
+        this.maxMovimenti = maxMovimenti;
+    }
+
+    /**
+     * Se anche un solo movimento non è valido il lotto non viene scritto: il resoconto
+     * elenca gli errori con la posizione del movimento nella richiesta.
+     * Le vendite di veicoli prenotati da un titolare diverso dall'operatore sono errori.
+     */
+    public ImportReportDto inserisci(List<MovimentoRequestDto> movimenti, String operatore) {
+        if (movimenti == null || movimenti.isEmpty()) {
+            throw new IllegalArgumentException("Il lotto non contiene movimenti");
+        }
+        if (movimenti.size() > maxMovimenti) {
+            throw new IllegalArgumentException("Il lotto supera il limite di " + maxMovimenti + " movimenti");
+        }
+
+        long inizio = System.nanoTime();
+        ImportReportDto report = new ImportReportDto();
+        report.setRigheLette(movimenti.size());
+
+        List<RigaMovimento> valide = new ArrayList<>(movimenti.size());
+        for (int i = 0; i < movimenti.size(); i++) {
+            RigaMovimento r = new RigaMovimento(i + 1L, movimenti.get(i));
+            if (verificaCampi(r, report)) {
+                valide.add(r);
+            }
+        }
+
+        Set<String> telaiAggiornati = new HashSet<>();
+        if (report.getErroriTotali() == 0) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!scrivi(valide, operatore, report, telaiAggiornati)) {
+                    status.setRollbackOnly();
+                }
+            });
+        }
+        // Le righe di veicolo modificate vanno rilette dal database al prossimo accesso
+        telaiAggiornati.forEach(cacheVeicoli::invalida);
+        report.concludi(inizio);
+
+        logger.info("Lotto di movimenti {}: {} ricevuti, {} inseriti, {} errori in {} ms",
+                report.getRigheImportate() > 0 ? "inserito" : "rifiutato",
+                report.getRigheLette(), report.getRigheImportate(), report.getErroriTotali(),
+                report.getDurataMillisecondi());
+        return report;
+    }
+
+    // Stessi controlli di coerenza applicati dal controller al singolo inserimento
+    private boolean verificaCampi(RigaMovimento r, ImportReportDto report) {
+        MovimentoRequestDto m = r.movimento();
+        if (m == null) {
+            report.aggiungiErrore(r.riga(), null, "Movimento mancante");
+            return false;
+        }
+        if (m.getCodiceFiscaleUtente() == null || m.getCodiceFiscaleUtente().isBlank()) {
+            report.aggiungiErrore(r.riga(), m.getNumeroTelaio(), "Codice fiscale dell'utente obbligatorio");
+            return false;
+        }
+        if (m.getNumeroTelaio() == null || m.getNumeroTelaio().isBlank()) {
+            report.aggiungiErrore(r.riga(), m.getCodiceFiscaleUtente(), "Numero di telaio obbligatorio");
+            return false;
+        }
+        if (m.getPrezzo() < 0) {
+            report.aggiungiErrore(r.riga(), m.getNumeroTelaio(), "Il prezzo non può essere negativo");
+            return false;
+        }
+        if (!m.isHasComproprietario()) {
+            m.setCodiceFiscaleComproprietario(null);
+            m.setPrezzoPerProprietario(null);
+        } else if (m.getCodiceFiscaleComproprietario() == null || m.getCodiceFiscaleComproprietario().isBlank()) {
+            report.aggiungiErrore(r.riga(), m.getNumeroTelaio(), "Codice fiscale del comproprietario obbligatorio");
+            return false;
+        } else if (m.getCodiceFiscaleUtente().equals(m.getCodiceFiscaleComproprietario())) {
+            report.aggiungiErrore(r.riga(), m.getNumeroTelaio(),
+                    "Il proprietario e il comproprietario non possono essere la stessa persona");
+            return false;
+        } else {
+            m.setPrezzoPerProprietario(m.getPrezzo() / 2);
+        }
+        if (m.getDataMovimento() == null) {
+            m.setDataMovimento(new Date());
+        }
+        if (m.getTipoMovimento() == null) {
+            m.setTipoMovimento(TipoMovimento.VENDITA);
+        }
+        return true;
+    }
+
+    // Eseguito nella transazione del lotto; restituisce false se il lotto va annullato
+    private boolean scrivi(List<RigaMovimento> righe, String operatore, ImportReportDto report,
+            Set<String> telaiAggiornati) {
+        Set<String> codiciFiscali = new LinkedHashSet<>();
+        Set<String> telai = new LinkedHashSet<>();
+        for (RigaMovimento r : righe) {
+            codiciFiscali.add(r.movimento().getCodiceFiscaleUtente());
+            if (r.movimento().isHasComproprietario()) {
+                codiciFiscali.add(r.movimento().getCodiceFiscaleComproprietario());
+            }
+            telai.add(r.movimento().getNumeroTelaio());
+        }
+
+        Set<String> utentiEsistenti = new HashSet<>(utenteRepository.findCodiciFiscaliEsistenti(codiciFiscali));
+        Map<String, Veicolo> veicoli = veicoloRepository.findAllById(telai).stream()
+                .collect(Collectors.toMap(Veicolo::getNumeroTelaio, Function.identity()));
+
+        // Disponibilità simulata movimento dopo movimento, partendo dallo stato attuale dei veicoli;
+        // a parità di data conta l'ordine della richiesta
+        List<RigaMovimento> cronologiche = new ArrayList<>(righe);
+        cronologiche.sort(Comparator.comparing((RigaMovimento r) -> r.movimento().getDataMovimento())
+                .thenComparingLong(RigaMovimento::riga));
+        Map<String, Boolean> disponibilita = new HashMap<>();
+        veicoli.forEach((telaio, v) -> disponibilita.put(telaio, v.isDisponibile()));
+
+        for (RigaMovimento r : cronologiche) {
+            MovimentoRequestDto m = r.movimento();
+            if (!utentiEsistenti.contains(m.getCodiceFiscaleUtente())) {
+                report.aggiungiErrore(r.riga(), m.getCodiceFiscaleUtente(), "Utente non esistente");
+            }
+            if (m.isHasComproprietario() && !utentiEsistenti.contains(m.getCodiceFiscaleComproprietario())) {
+                report.aggiungiErrore(r.riga(), m.getCodiceFiscaleComproprietario(), "Comproprietario non esistente");
+            }
+            Boolean disponibile = disponibilita.get(m.getNumeroTelaio());
+            if (disponibile == null) {
+                report.aggiungiErrore(r.riga(), m.getNumeroTelaio(), "Veicolo non esistente");
+            } else if (m.getTipoMovimento() == TipoMovimento.VENDITA) {
+                if (!disponibile) {
+                    report.aggiungiErrore(r.riga(), m.getNumeroTelaio(), "Veicolo non disponibile alla data della vendita");
+                } else {
+                    try {
+                        prenotazioniService.verificaVendibile(m.getNumeroTelaio(), operatore);
+                    } catch (VeicoloNonDisponibileException e) {
+                        report.aggiungiErrore(r.riga(), m.getNumeroTelaio(), "Veicolo prenotato da un altro operatore");
+                    }
+                }
+                disponibilita.put(m.getNumeroTelaio(), false);
+            } else if (m.getTipoMovimento() == TipoMovimento.ACQUISTO) {
+                disponibilita.put(m.getNumeroTelaio(), true);
+            }
+        }
+        if (report.getErroriTotali() > 0) {
+            return false;
+        }
+
+        // Gli ID arrivano a blocchi dal generatore a tabella: gli INSERT sono raggruppati in batch JDBC al flush
+        List<Movimento> daInserire = new ArrayList<>(cronologiche.size());
+        for (RigaMovimento r : cronologiche) {
+            MovimentoRequestDto m = r.movimento();
+            Movimento movimento = new Movimento();
+            movimento.setUtente(utenteRepository.getReferenceById(m.getCodiceFiscaleUtente()));
+            if (m.isHasComproprietario()) {
+                movimento.setHasComproprietario(true);
+                movimento.setComproprietario(utenteRepository.getReferenceById(m.getCodiceFiscaleComproprietario()));
+                movimento.setPrezzoPerProprietario(m.getPrezzoPerProprietario());
+            }
+            movimento.setVeicolo(veicoli.get(m.getNumeroTelaio()));
+            movimento.setDataMovimento(m.getDataMovimento());
+            movimento.setTipoMovimento(m.getTipoMovimento());
+            movimento.setPrezzo(m.getPrezzo());
+            daInserire.add(movimento);
+        }
+        movimentoRepository.saveAll(daInserire);
+
+        // Solo lo stato finale di ogni veicolo viene scritto, con un UPDATE per veicolo cambiato
+        disponibilita.forEach((telaio, disponibile) -> {
+            Veicolo veicolo = veicoli.get(telaio);
+            if (veicolo.isDisponibile() != disponibile) {
+                veicolo.setDisponibile(disponibile);
+                telaiAggiornati.add(telaio);
+                if (!disponibile) {
+                    prenotazioniService.veicoloNonPiuDisponibile(telaio);
+                }
+            }
+        });
+        contatoriModifiche.modificata(Tabella.MOVIMENTI, Tabella.VEICOLI);
+        report.setRigheImportate(cronologiche.size());
+        return true;
+    }
+}
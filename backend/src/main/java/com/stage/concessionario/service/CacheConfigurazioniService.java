@@ -0,0 +1,93 @@
+package com.stage.concessionario.service;
+
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stage.concessionario.dto.ConfigurazioneResponseDto;
+import com.stage.concessionario.mapper.ConfigurazioneMapper;
+import com.stage.concessionario.model.Configurazione;
+import com.stage.concessionario.repository.ConfigurazioneRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache limitata delle configurazioni, per ID e per nome.
+ * Le configurazioni sono poche e cambiano raramente: dopo il primo accesso le letture
+ * non interrogano più il database. ConfigurazioneService aggiorna la cache dopo ogni
+ * salvataggio (write-through). Hit e miss sono esposti come metriche cache.gets.
+ * Le assenze non vengono memorizzate, così una configurazione appena creata è subito visibile.
+ */
+@Service
+public class CacheConfigurazioniService {
+
+    private static final int MAX_CONFIGURAZIONI = 1000;
+
+    private final ConfigurazioneRepository configurazioneRepository;
+    private final ConfigurazioneMapper configurazioneMapper;
+    private final Cache<Integer, ConfigurazioneResponseDto> perId;
+    private final Cache<String, Integer> idPerNome;
+    private static final Logger logger = LogManager.getLogger(CacheConfigurazioniService.class);
+
+    public CacheConfigurazioniService(ConfigurazioneRepository configurazioneRepository, ConfigurazioneMapper configurazioneMapper,
+            MeterRegistry meterRegistry) {
+        this.configurazioneRepository = configurazioneRepository;
+        this.configurazioneMapper = configurazioneMapper;
+        this.perId = Caffeine.newBuilder().maximumSize(MAX_CONFIGURAZIONI).recordStats().build();
+        this.idPerNome = Caffeine.newBuilder().maximumSize(MAX_CONFIGURAZIONI).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, perId, "configurazioni.id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idPerNome, "configurazioni.nome");
+    }
+
+    public Optional<ConfigurazioneResponseDto> perId(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(perId.get(id, this::caricaPerId));
+    }
+
+    public Optional<ConfigurazioneResponseDto> perNome(String nomeConfigurazione) {
+        if (nomeConfigurazione == null) {
+            return Optional.empty();
+        }
+        Integer id = idPerNome.get(nomeConfigurazione, nome -> configurazioneRepository.findByNomeConfigurazione(nome)
+                .map(this::memorizza)
+                .map(ConfigurazioneResponseDto::getIdConfigurazione)
+                .orElse(null));
+        return id == null ? Optional.empty() : perId(id);
+    }
+
+    /**
+     * Riferimento alla configurazione da assegnare a un veicolo: se la cache ne conferma
+     * l'esistenza si usa un proxy, senza SELECT sulla tabella configurazione.
+     */
+    public Optional<Configurazione> riferimentoPerId(Integer id) {
+        return perId(id).map(dto -> configurazioneRepository.getReferenceById(dto.getIdConfigurazione()));
+    }
+
+    // Write-through dopo insert e update: il vecchio nome non deve più risolvere questo ID
+    public ConfigurazioneResponseDto salvata(Configurazione configurazione, String nomePrecedente) {
+        if (nomePrecedente != null) {
+            idPerNome.invalidate(nomePrecedente);
+        }
+        ConfigurazioneResponseDto dto = memorizza(configurazione);
+        idPerNome.put(dto.getNomeConfigurazione(), dto.getIdConfigurazione());
+        logger.debug("Cache configurazioni aggiornata per ID {}", dto.getIdConfigurazione());
+        return dto;
+    }
+
+    private ConfigurazioneResponseDto caricaPerId(Integer id) {
+        return configurazioneRepository.findById(id).map(configurazioneMapper::toDto).orElse(null);
+    }
+
+    private ConfigurazioneResponseDto memorizza(Configurazione configurazione) {
+        ConfigurazioneResponseDto dto = configurazioneMapper.toDto(configurazione);
+        perId.put(dto.getIdConfigurazione(), dto);
+        return dto;
+    }
+}
@@ -0,0 +1,83 @@
+package com.stage.concessionario.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stage.concessionario.dto.VeicoloResponseDto;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Near cache dei VeicoloResponseDto per numero di telaio, usata da GET /api/veicoli/{numeroTelaio}.
+ * Più richieste concorrenti sullo stesso telaio non presente in cache attendono un unico
+ * caricamento dal database. Un'invalidazione che arriva durante il caricamento attende
+ * che questo termini e poi lo scarta, quindi un valore vecchio non resta in cache.
+ * I veicoli inesistenti non vengono memorizzati.
+ */
+@Service
+public class CacheVeicoliService {
+
+    private static final int MAX_VEICOLI = 5000;
+    // Limite di sicurezza per le modifiche che non passano dai service (es. import massivi)
+    private static final Duration SCADENZA = Duration.ofMinutes(5);
+
+    private final Cache<String, VeicoloResponseDto> perTelaio;
+
+    public CacheVeicoliService(MeterRegistry meterRegistry) {
+        this.perTelaio = Caffeine.newBuilder()
+                .maximumSize(MAX_VEICOLI)
+                .expireAfterWrite(SCADENZA)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, perTelaio, "veicoli.telaio");
+    }
+
+    public Optional<VeicoloResponseDto> perTelaio(String numeroTelaio, Function<String, VeicoloResponseDto> caricamento) {
+        if (numeroTelaio == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(perTelaio.get(numeroTelaio, caricamento));
+    }
+
+    public void invalida(String numeroTelaio) {
+        if (numeroTelaio != null) {
+            perTelaio.invalidate(numeroTelaio);
+        }
+    }
+
+    // Dentro una transazione la voce va rimossa anche dopo il commit: una lettura concorrente
+    // potrebbe averla ricaricata con lo stato precedente nel frattempo
+    public void invalidaDopoCommit(String numeroTelaio) {
+        invalida(numeroTelaio);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalida(numeroTelaio);
+                }
+            });
+        }
+    }
+
+    // Usato quando cambia un dato incorporato in tutti i DTO (es. il nome di una configurazione);
+    // dentro una transazione ripete l'invalidazione dopo il commit, come invalidaDopoCommit
+    public void invalidaTutti() {
+        perTelaio.invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    perTelaio.invalidateAll();
+                }
+            });
+        }
+    }
+}
@@ -7,23 +7,33 @@ import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.stage.concessionario.dto.ConfigurazioneRequestDto;
 import com.stage.concessionario.dto.ConfigurazioneResponseDto;
 import com.stage.concessionario.mapper.ConfigurazioneMapper;
 import com.stage.concessionario.model.Configurazione;
 import com.stage.concessionario.repository.ConfigurazioneRepository;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
 
 @Service
 public class ConfigurazioneService {
 
     private final ConfigurazioneRepository configurazioneRepository;
     private final ConfigurazioneMapper configurazioneMapper;
+    private final CacheConfigurazioniService cacheConfigurazioni;
+    private final CacheVeicoliService cacheVeicoli;
+    private final ContatoriModificheService contatoriModifiche;
     private static final Logger logger = LogManager.getLogger(ConfigurazioneService.class);
 
-    public ConfigurazioneService(ConfigurazioneRepository configurazioneRepository, ConfigurazioneMapper configurazioneMapper) {
+    public ConfigurazioneService(ConfigurazioneRepository configurazioneRepository, ConfigurazioneMapper configurazioneMapper,
+            CacheConfigurazioniService cacheConfigurazioni, CacheVeicoliService cacheVeicoli,
+            ContatoriModificheService contatoriModifiche) {
         this.configurazioneRepository = configurazioneRepository;
         this.configurazioneMapper = configurazioneMapper;
+        this.cacheConfigurazioni = cacheConfigurazioni;
+        this.cacheVeicoli = cacheVeicoli;
+        this.contatoriModifiche = contatoriModifiche;
     }
 
     public List<ConfigurazioneResponseDto> getConfigurazioni() {
@@ -33,10 +43,10 @@ public class ConfigurazioneService {
     }
 
     public ConfigurazioneResponseDto getConfigurazioneById(Integer id) {
-        Optional<Configurazione> configurazione = configurazioneRepository.findById(id);
+        Optional<ConfigurazioneResponseDto> configurazione = cacheConfigurazioni.perId(id);
         if (configurazione.isPresent()) {
             logger.info("Configurazione con ID {} trovata correttamente", id);
-            return configurazioneMapper.toDto(configurazione.get());
+            return configurazione.get();
         } else {
             logger.error("Configurazione con ID {} non esistente", id);
             return null;
@@ -44,32 +54,36 @@ public class ConfigurazioneService {
     }
 
     public ConfigurazioneResponseDto getConfigurazioneByNome(String nomeConfigurazione) {
-        Optional<Configurazione> configurazione = configurazioneRepository.findByNomeConfigurazione(nomeConfigurazione);
+        Optional<ConfigurazioneResponseDto> configurazione = cacheConfigurazioni.perNome(nomeConfigurazione);
         if (configurazione.isPresent()) {
             logger.info("Configurazione con nome {} trovata correttamente", nomeConfigurazione);
-            return configurazioneMapper.toDto(configurazione.get());
+            return configurazione.get();
         } else {
             logger.error("Configurazione con nome {} non esistente", nomeConfigurazione);
             return null;
         }
     }
 
+    @Transactional
     public ConfigurazioneResponseDto insert(ConfigurazioneRequestDto configurazioneRequestDto) {
         logger.debug("Tentativo di inserimento configurazione: {}", configurazioneRequestDto);
 
-        Optional<Configurazione> existingConfig = configurazioneRepository.findByNomeConfigurazione(configurazioneRequestDto.getNomeConfigurazione());
+        Optional<ConfigurazioneResponseDto> existingConfig = cacheConfigurazioni.perNome(configurazioneRequestDto.getNomeConfigurazione());
         if (existingConfig.isPresent()) {
             logger.error("Esiste già una configurazione con questo nome: {}", configurazioneRequestDto.getNomeConfigurazione());
             return null;
         }
 
         Configurazione savedConfigurazione = configurazioneMapper.toEntityFromDtoRequest(configurazioneRequestDto);
-        configurazioneRepository.save(savedConfigurazione);
+        // Flush immediato: un errore del database arriva prima dell'aggiornamento della cache
+        configurazioneRepository.saveAndFlush(savedConfigurazione);
+        contatoriModifiche.modificata(Tabella.CONFIGURAZIONI);
         logger.info("Configurazione con ID {} inserita correttamente", savedConfigurazione.getIdConfigurazione());
 
-        return configurazioneMapper.toDto(savedConfigurazione);
+        return cacheConfigurazioni.salvata(savedConfigurazione, null);
     }
 
+    @Transactional
     public ConfigurazioneResponseDto update(ConfigurazioneRequestDto configurazioneRequestDto, Integer id) {
         Optional<Configurazione> existingConfigOpt = configurazioneRepository.findById(id);
         
@@ -79,12 +93,16 @@ public class ConfigurazioneService {
         }
 
         Configurazione existingConfig = existingConfigOpt.get();
+        String nomePrecedente = existingConfig.getNomeConfigurazione();
         existingConfig.setNomeConfigurazione(configurazioneRequestDto.getNomeConfigurazione());
 
-        configurazioneRepository.save(existingConfig);
+        configurazioneRepository.saveAndFlush(existingConfig);
+        contatoriModifiche.modificata(Tabella.CONFIGURAZIONI);
 
         logger.info("Configurazione con ID {} aggiornata correttamente", id);
 
-        return configurazioneMapper.toDto(existingConfig);
+        // Il nome della configurazione è incorporato nei DTO dei veicoli in cache
+        cacheVeicoli.invalidaTutti();
+        return cacheConfigurazioni.salvata(existingConfig, nomePrecedente);
     }
 }
\ No newline at end of file
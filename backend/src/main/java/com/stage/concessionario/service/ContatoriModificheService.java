@@ -0,0 +1,121 @@
+package com.stage.concessionario.service;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.stage.concessionario.model.ContatoreModifiche;
+import com.stage.concessionario.repository.ContatoreModificheRepository;
+
+/**
+ * Contatori di modifica per tabella, da cui derivano gli ETag delle risposte GET delle API
+ * (vedi ETagInterceptor). I contatori sono nella tabella contatore_modifiche, condivisa da tutti i nodi.
+ * Ogni scrittura li incrementa dopo il proprio commit, in una transazione breve e separata: la riga
+ * del contatore non resta bloccata per tutta la scrittura e le scritture concorrenti non si mettono in
+ * coda su di essa. Tra il commit dei dati e l'incremento c'è una breve finestra in cui una GET può
+ * rispondere 304 a chi ha i dati precedenti; il prossimo incremento la chiude.
+ * Il trigger after_movimento_delete (vedi DatabaseService) incrementa i contatori delle righe che
+ * modifica; le scritture eseguite a mano sul database non li aggiornano.
+ */
+@Service
+public class ContatoriModificheService implements InitializingBean {
+
+    public enum Tabella { VEICOLI, UTENTI, MOVIMENTI, CONFIGURAZIONI }
+
+    private final ContatoreModificheRepository repository;
+    private static final Logger logger = LogManager.getLogger(ContatoriModificheService.class);
+
+    public ContatoriModificheService(ContatoreModificheRepository repository) {
+        this.repository = repository;
+    }
+
+    // Crea le righe mancanti. Il valore iniziale è l'istante corrente, così se la tabella viene
+    // ricreata un vecchio ETag non coincide con quelli nuovi
+    @Override
+    public void afterPropertiesSet() {
+        Set<String> presenti = repository.findAll().stream()
+                .map(ContatoreModifiche::getTabella)
+                .collect(Collectors.toSet());
+        for (Tabella tabella : Tabella.values()) {
+            if (!presenti.contains(tabella.name())) {
+                try {
+                    repository.inserisci(tabella.name(), System.currentTimeMillis());
+                } catch (DataIntegrityViolationException e) {
+                    logger.info("Contatore di modifica {} già creato da un altro nodo", tabella);
+                }
+            }
+        }
+    }
+
+    // Dentro una transazione l'incremento avviene dopo il commit, una sola volta per tabella; senza transazione subito
+    public void modificata(Tabella... tabelle) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Modifiche modifiche = (Modifiche) TransactionSynchronizationManager.getResource(this);
+            if (modifiche == null) {
+                modifiche = new Modifiche();
+                TransactionSynchronizationManager.bindResource(this, modifiche);
+                TransactionSynchronizationManager.registerSynchronization(modifiche);
+            }
+            modifiche.tabelle.addAll(List.of(tabelle));
+        } else {
+            incrementa(EnumSet.copyOf(List.of(tabelle)));
+        }
+    }
+
+    // ETag forte: cambia a ogni modifica di una delle tabelle indicate; null se i contatori non sono leggibili
+    public String etag(Tabella... tabelle) {
+        Map<String, Long> valori;
+        try {
+            valori = repository.findAll().stream()
+                    .collect(Collectors.toMap(ContatoreModifiche::getTabella, ContatoreModifiche::getValore));
+        } catch (DataAccessException e) {
+            logger.error("Lettura dei contatori di modifica non riuscita", e);
+            return null;
+        }
+        StringBuilder etag = new StringBuilder("\"");
+        for (Tabella tabella : tabelle) {
+            if (etag.length() > 1) {
+                etag.append('-');
+            }
+            etag.append(Long.toString(valori.getOrDefault(tabella.name(), 0L), 36));
+        }
+        return etag.append('"').toString();
+    }
+
+    // Le righe sono aggiornate in ordine di chiave con un solo UPDATE, nella transazione propria del repository.
+    // I dati sono già confermati: se l'incremento fallisce l'ETag resta indietro fino alla prossima scrittura
+    private void incrementa(Set<Tabella> tabelle) {
+        try {
+            repository.incrementa(tabelle.stream().map(Tabella::name).sorted().toList());
+        } catch (DataAccessException e) {
+            logger.error("Incremento dei contatori di modifica {} non riuscito", tabelle, e);
+        }
+    }
+
+    // Tabelle modificate dalla transazione corrente
+    private final class Modifiche implements TransactionSynchronization {
+
+        private final Set<Tabella> tabelle = EnumSet.noneOf(Tabella.class);
+
+        @Override
+        public void afterCommit() {
+            incrementa(tabelle);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ContatoriModificheService.this);
+        }
+    }
+}
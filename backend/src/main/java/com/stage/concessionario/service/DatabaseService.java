@@ -16,26 +16,6 @@ public class DatabaseService {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    @Transactional
-    public void resetSequence(String tableName) {
-        // Verifica se ci sono record nella tabella
-        Integer count = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM concessionario." + tableName, Integer.class);
-        
-        if (count == null || count == 0) {
-            // Se la tabella è vuota, reimposta l'auto_increment a 1
-            jdbcTemplate.execute("ALTER TABLE concessionario." + tableName + " AUTO_INCREMENT = 1");
-        } else {
-            // Se ci sono record, reimposta l'auto_increment al valore massimo + 1
-            Integer maxId = jdbcTemplate.queryForObject(
-                    "SELECT MAX(id_" + tableName + ") FROM concessionario." + tableName, Integer.class);
-            
-            if (maxId != null) {
-                jdbcTemplate.execute("ALTER TABLE concessionario." + tableName + " AUTO_INCREMENT = " + (maxId + 1));
-            }
-        }
-    }
-    
     @Transactional
     public void createTriggerForMovimentiDelete() {
         try {
@@ -49,8 +29,12 @@ public class DatabaseService {
                 "FOR EACH ROW " +
                 "BEGIN " +
                 "    UPDATE concessionario.veicolo " +
-                "    SET disponibile = true " +
+                "    SET disponibile = true, versione = versione + 1 " +
                 "    WHERE numero_telaio = OLD.numero_telaio; " +
+                // Le scritture del trigger non passano dai service: cambia qui gli ETag delle API
+                "    UPDATE concessionario.contatore_modifiche " +
+                "    SET valore = valore + 1 " +
+                "    WHERE tabella IN ('MOVIMENTI', 'VEICOLI'); " +
                 "END;";
             
             jdbcTemplate.execute(triggerSql);
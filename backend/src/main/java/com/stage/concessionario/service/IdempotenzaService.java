@@ -0,0 +1,257 @@
+package com.stage.concessionario.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stage.concessionario.model.RispostaIdempotente;
+import com.stage.concessionario.repository.RispostaIdempotenteRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Registro delle risposte alle richieste con header Idempotency-Key.
+ * Le risposte sono in una cache in memoria limitata per numero e durata, con copia nella tabella
+ * risposta_idempotente per i duplicati che arrivano dopo un riavvio o dopo l'uscita dalla cache.
+ * Le richieste concorrenti con la stessa chiave attendono la prima invece di essere eseguite di nuovo:
+ * sullo stesso nodo tramite un future, tra nodi diversi tramite una riga segnaposto inserita nella
+ * tabella all'arrivo della prima richiesta e sostituita dalla risposta.
+ */
+@Service
+public class IdempotenzaService {
+
+    public enum Stato { ESEGUI, RIPETI, IN_CORSO }
+
+    // La richiesta va eseguita (ESEGUI), ripetuta dalla risposta memorizzata (RIPETI)
+    // o rifiutata perché la prima è ancora in corso (IN_CORSO)
+    public record Accesso(Stato stato, Risposta risposta) {}
+
+    public record Risposta(String impronta, int stato, String tipoContenuto, byte[] corpo) {}
+
+    private static final Duration INTERVALLO_PULIZIA = Duration.ofHours(1);
+    private static final long INTERVALLO_CONTROLLO_MILLIS = 100;
+
+    private final RispostaIdempotenteRepository repository;
+    private final Duration durata;
+    private final Duration attesaMassima;
+    private final Duration inCorsoMassimo;
+    private final Cache<String, Risposta> risposte;
+    private final Map<String, CompletableFuture<Risposta>> inCorso = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService pulizia;
+    private static final Logger logger = LogManager.getLogger(IdempotenzaService.class);
+
+    public IdempotenzaService(RispostaIdempotenteRepository repository, MeterRegistry meterRegistry,
+            @Value("${idempotenza.max-chiavi:10000}") int maxChiavi,
+            @Value("${idempotenza.durata:PT24H}") Duration durata,
+            @Value("${idempotenza.attesa-massima:PT10S}") Duration attesaMassima,
+            @Value("${idempotenza.in-corso-massimo:PT5M}") Duration inCorsoMassimo) {
+        this.repository = repository;
+        this.durata = durata;
+        this.attesaMassima = attesaMassima;
+        this.inCorsoMassimo = inCorsoMassimo;
+        this.risposte = Caffeine.newBuilder()
+                .maximumSize(maxChiavi)
+                .expireAfterWrite(durata)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, risposte, "idempotenza.risposte");
+        this.pulizia = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotenza-pulizia");
+            t.setDaemon(true);
+            return t;
+        });
+        this.pulizia.scheduleWithFixedDelay(this::eliminaScadute, INTERVALLO_PULIZIA.toMinutes(),
+                INTERVALLO_PULIZIA.toMinutes(), TimeUnit.MINUTES);
+    }
+
+    // Le chiavi dei client sono separate per metodo, percorso e utente
+    public static String chiave(String metodo, String percorso, String utente, String chiaveClient) {
+        return sha256((metodo + "\n" + percorso + "\n" + utente + "\n" + chiaveClient).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String sha256(byte[] dati) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(dati));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Con esito ESEGUI la richiesta corrente diventa la prima per la chiave e deve chiamare
+     * completa oppure abbandona; negli altri casi non va eseguita.
+     */
+    public Accesso accedi(String chiave, String impronta) {
+        Risposta risposta = cerca(chiave);
+        if (risposta != null) {
+            return new Accesso(Stato.RIPETI, risposta);
+        }
+
+        CompletableFuture<Risposta> nuova = new CompletableFuture<>();
+        CompletableFuture<Risposta> esistente = inCorso.putIfAbsent(chiave, nuova);
+        if (esistente == null) {
+            // La prima richiesta può aver terminato tra la ricerca e la registrazione
+            risposta = cerca(chiave);
+            Accesso accesso = risposta != null ? new Accesso(Stato.RIPETI, risposta) : registra(chiave, impronta);
+            if (accesso.stato() != Stato.ESEGUI) {
+                // I duplicati in attesa su questo nodo ricevono lo stesso esito
+                inCorso.remove(chiave, nuova);
+                nuova.complete(accesso.risposta());
+            }
+            return accesso;
+        }
+
+        try {
+            risposta = esistente.get(attesaMassima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Richiesta idempotente ancora in corso dopo {} ms", attesaMassima.toMillis());
+        }
+        return risposta != null ? new Accesso(Stato.RIPETI, risposta) : new Accesso(Stato.IN_CORSO, null);
+    }
+
+    // Memorizza la risposta della prima richiesta e la consegna ai duplicati in attesa
+    public void completa(String chiave, Risposta risposta) {
+        risposte.put(chiave, risposta);
+        RispostaIdempotente r = new RispostaIdempotente();
+        r.setChiave(chiave);
+        r.setImpronta(risposta.impronta());
+        r.setStato(risposta.stato());
+        r.setTipoContenuto(risposta.tipoContenuto());
+        r.setCorpo(risposta.corpo());
+        r.setCreata(new Date());
+        try {
+            repository.save(r);
+        } catch (DataAccessException e) {
+            // Resta la copia in memoria: si perde solo la protezione dopo un riavvio
+            logger.error("Salvataggio della risposta idempotente non riuscito", e);
+        }
+        CompletableFuture<Risposta> attesa = inCorso.remove(chiave);
+        if (attesa != null) {
+            attesa.complete(risposta);
+        }
+    }
+
+    // La prima richiesta non ha prodotto una risposta da memorizzare: i duplicati in attesa ricevono IN_CORSO
+    // e il segnaposto viene eliminato, così un nuovo tentativo con la stessa chiave viene eseguito
+    public void abbandona(String chiave) {
+        try {
+            repository.eliminaInCorso(chiave);
+        } catch (DataAccessException e) {
+            logger.error("Eliminazione del segnaposto della richiesta idempotente non riuscita", e);
+        }
+        CompletableFuture<Risposta> attesa = inCorso.remove(chiave);
+        if (attesa != null) {
+            attesa.complete(null);
+        }
+    }
+
+    /**
+     * Registra la richiesta come prima per la chiave inserendo il segnaposto. Se la chiave è già
+     * nella tabella la richiesta viene ripetuta dalla risposta salvata oppure, se un altro nodo la
+     * sta eseguendo, attende la sua risposta al massimo attesaMassima. Un segnaposto più vecchio di
+     * inCorsoMassimo è di una richiesta interrotta e viene ripreso.
+     */
+    private Accesso registra(String chiave, String impronta) {
+        long limiteAttesa = System.currentTimeMillis() + attesaMassima.toMillis();
+        while (true) {
+            try {
+                repository.inserisciInCorso(chiave, impronta, new Date());
+                return new Accesso(Stato.ESEGUI, null);
+            } catch (DataIntegrityViolationException e) {
+                // Chiave già registrata: si legge la riga
+            } catch (DataAccessException e) {
+                // Resta il coordinamento tra le richieste di questo nodo
+                logger.error("Registrazione della richiesta idempotente non riuscita", e);
+                return new Accesso(Stato.ESEGUI, null);
+            }
+
+            long adesso = System.currentTimeMillis();
+            Optional<RispostaIdempotente> riga = repository.findById(chiave);
+            if (riga.isPresent() && riga.get().getStato() != RispostaIdempotente.STATO_IN_CORSO) {
+                Risposta risposta = risposta(chiave, riga.get());
+                if (risposta != null) {
+                    return new Accesso(Stato.RIPETI, risposta);
+                }
+                // Risposta scaduta non ancora eliminata dalla pulizia periodica
+                repository.delete(riga.get());
+                continue;
+            }
+            if (riga.isPresent() && riga.get().getCreata().getTime() < adesso - inCorsoMassimo.toMillis()
+                    && repository.riprendiInCorso(chiave, new Date(adesso), new Date(adesso - inCorsoMassimo.toMillis())) > 0) {
+                logger.warn("Ripresa una richiesta idempotente rimasta in corso per oltre {} s", inCorsoMassimo.toSeconds());
+                return new Accesso(Stato.ESEGUI, null);
+            }
+            // In corso su un altro nodo (riga presente) o appena abbandonata (riga assente): si riprova
+            if (adesso >= limiteAttesa) {
+                logger.warn("Richiesta idempotente ancora in corso dopo {} ms", attesaMassima.toMillis());
+                return new Accesso(Stato.IN_CORSO, null);
+            }
+            try {
+                Thread.sleep(INTERVALLO_CONTROLLO_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Accesso(Stato.IN_CORSO, null);
+            }
+        }
+    }
+
+    private Risposta cerca(String chiave) {
+        Risposta risposta = risposte.getIfPresent(chiave);
+        if (risposta != null) {
+            return risposta;
+        }
+        Optional<RispostaIdempotente> salvata = repository.findById(chiave);
+        return salvata.isPresent() ? risposta(chiave, salvata.get()) : null;
+    }
+
+    // Risposta di una riga della tabella; null per i segnaposto e le risposte scadute
+    private Risposta risposta(String chiave, RispostaIdempotente r) {
+        if (r.getStato() == RispostaIdempotente.STATO_IN_CORSO
+                || r.getCreata().getTime() < System.currentTimeMillis() - durata.toMillis()) {
+            return null;
+        }
+        Risposta risposta = new Risposta(r.getImpronta(), r.getStato(), r.getTipoContenuto(), r.getCorpo());
+        risposte.put(chiave, risposta);
+        return risposta;
+    }
+
+    private void eliminaScadute() {
+        try {
+            int eliminate = repository.eliminaCreatePrima(new Date(System.currentTimeMillis() - durata.toMillis()));
+            logger.info("Eliminate {} risposte idempotenti scadute", eliminate);
+        } catch (RuntimeException e) {
+            // Un'eccezione non gestita fermerebbe l'esecuzione periodica
+            logger.error("Errore durante l'eliminazione delle risposte idempotenti scadute", e);
+        }
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        pulizia.shutdownNow();
+    }
+}
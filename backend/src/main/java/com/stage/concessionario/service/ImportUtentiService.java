@@ -0,0 +1,277 @@
+package com.stage.concessionario.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stage.concessionario.dto.ImportReportDto;
+import com.stage.concessionario.dto.UtenteRequestDto;
+import com.stage.concessionario.repository.UtenteRepository;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Import massivo degli utenti da CSV o NDJSON (un oggetto UtenteRequestDto per riga).
+ * Il file è letto in streaming e confermato a blocchi di import.batch-size righe: una query IN
+ * per i codici fiscali già presenti, un batch JDBC e un commit per blocco.
+ * Se un blocco non può essere scritto l'import si ferma e il resoconto indica l'ultima riga
+ * confermata: ricaricando lo stesso file con daRiga uguale a quel valore si riprende da lì.
+ */
+@Service
+public class ImportUtentiService {
+
+    static final String[] COLONNE_OBBLIGATORIE = {
+            "codiceFiscaleUtente", "nome", "cognome", "dataNascita", "email", "indirizzo" };
+
+    private static final String INSERT_UTENTE = "INSERT INTO utente "
+            + "(codice_fiscale_utente, nome, cognome, data_nascita, telefono, email, indirizzo, versione) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final UtenteRepository utenteRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final IndiceTrigrammiService indiceTrigrammiService;
+    private final ContatoriModificheService contatoriModifiche;
+    private final int dimensioneBatch;
+    private static final Logger logger = LogManager.getLogger(ImportUtentiService.class);
+
+    // Record letto dal file: utente valorizzato oppure messaggio di errore di lettura
+    private record RigaUtente(long riga, UtenteRequestDto utente, String errore) {}
+
+    private interface Sorgente extends AutoCloseable {
+        RigaUtente prossima() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    public ImportUtentiService(UtenteRepository utenteRepository, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, Validator validator, ObjectMapper objectMapper,
+            IndiceTrigrammiService indiceTrigrammiService, ContatoriModificheService contatoriModifiche,
+            @Value("${import.batch-size:500}") int dimensioneBatch) {
+        this.utenteRepository = utenteRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.indiceTrigrammiService = indiceTrigrammiService;
+        this.contatoriModifiche = contatoriModifiche;
+        this.dimensioneBatch = dimensioneBatch;
+    }
+
+    /**
+     * @param ndjson true per un file NDJSON, false per un CSV con intestazione
+     * @param daRiga le righe fino a questa (compresa) sono già state confermate e vengono saltate
+     */
+    public ImportReportDto importa(InputStream input, boolean ndjson, long daRiga) throws IOException {
+        long inizio = System.nanoTime();
+        ImportReportDto report = new ImportReportDto();
+        report.setUltimaRigaConfermata(daRiga);
+
+        try (Sorgente sorgente = ndjson ? sorgenteNdjson(input) : sorgenteCsv(input)) {
+            Map<String, RigaUtente> blocco = new LinkedHashMap<>();
+            RigaUtente letta;
+            long ultimaLetta = daRiga;
+            while ((letta = sorgente.prossima()) != null) {
+                if (letta.riga() <= daRiga) {
+                    continue;
+                }
+                report.setRigheLette(report.getRigheLette() + 1);
+                ultimaLetta = letta.riga();
+
+                UtenteRequestDto utente = valida(letta, report);
+                if (utente != null) {
+                    if (blocco.containsKey(utente.getCodiceFiscaleUtente())) {
+                        report.aggiungiErrore(letta.riga(), utente.getCodiceFiscaleUtente(), "Codice fiscale duplicato nel file");
+                    } else {
+                        blocco.put(utente.getCodiceFiscaleUtente(), letta);
+                    }
+                }
+
+                if (blocco.size() >= dimensioneBatch) {
+                    if (!scrivi(blocco, report)) {
+                        break;
+                    }
+                    blocco.clear();
+                    report.setUltimaRigaConfermata(letta.riga());
+                    logger.info("Import utenti in corso: {} righe elaborate, {} importate ({} righe/s)",
+                            report.getRigheLette(), report.getRigheImportate(),
+                            String.format(Locale.ROOT, "%.0f", velocita(report, inizio)));
+                }
+            }
+            if (!report.isInterrotto() && scrivi(blocco, report)) {
+                report.setUltimaRigaConfermata(ultimaLetta);
+            }
+        }
+        report.concludi(inizio);
+
+        logger.info("Import utenti {}: {} righe lette, {} importate, {} errori, {} righe/s",
+                report.isInterrotto() ? "interrotto" : "completato",
+                report.getRigheLette(), report.getRigheImportate(), report.getErroriTotali(),
+                String.format(Locale.ROOT, "%.0f", report.getRigheAlSecondo()));
+        return report;
+    }
+
+    private UtenteRequestDto valida(RigaUtente letta, ImportReportDto report) {
+        if (letta.errore() != null) {
+            report.aggiungiErrore(letta.riga(), null, letta.errore());
+            return null;
+        }
+        UtenteRequestDto utente = letta.utente();
+        if (utente.getCodiceFiscaleUtente() != null) {
+            utente.setCodiceFiscaleUtente(utente.getCodiceFiscaleUtente().trim().toUpperCase(Locale.ROOT));
+        }
+        Set<ConstraintViolation<UtenteRequestDto>> violazioni = validator.validate(utente);
+        if (!violazioni.isEmpty()) {
+            report.aggiungiErrore(letta.riga(), utente.getCodiceFiscaleUtente(), violazioni.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return utente;
+    }
+
+    // Restituisce false se il blocco non è stato scritto e l'import deve fermarsi
+    private boolean scrivi(Map<String, RigaUtente> blocco, ImportReportDto report) {
+        if (blocco.isEmpty()) {
+            return true;
+        }
+
+        Set<String> esistenti = new HashSet<>(utenteRepository.findCodiciFiscaliEsistenti(blocco.keySet()));
+        List<UtenteRequestDto> daInserire = new ArrayList<>(blocco.size());
+        for (RigaUtente r : blocco.values()) {
+            if (esistenti.contains(r.utente().getCodiceFiscaleUtente())) {
+                report.aggiungiErrore(r.riga(), r.utente().getCodiceFiscaleUtente(), "Codice fiscale già in uso");
+            } else {
+                daInserire.add(r.utente());
+            }
+        }
+        if (daInserire.isEmpty()) {
+            return true;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_UTENTE, daInserire, dimensioneBatch, (ps, u) -> {
+                    ps.setString(1, u.getCodiceFiscaleUtente());
+                    ps.setString(2, u.getNome());
+                    ps.setString(3, u.getCognome());
+                    ps.setTimestamp(4, new Timestamp(u.getDataNascita().getTime()));
+                    ps.setString(5, u.getTelefono());
+                    ps.setString(6, u.getEmail());
+                    ps.setString(7, u.getIndirizzo());
+                });
+                // Ogni blocco confermato è subito visibile ai client, con il contatore aggiornato subito dopo il commit
+                contatoriModifiche.modificata(Tabella.UTENTI);
+            });
+        } catch (DataAccessException e) {
+            logger.error("Errore durante l'inserimento di un blocco di utenti, import interrotto", e);
+            RigaUtente prima = blocco.values().iterator().next();
+            report.aggiungiErrore(prima.riga(), prima.utente().getCodiceFiscaleUtente(),
+                    "Blocco non inserito, import interrotto: " + e.getMostSpecificCause().getMessage());
+            report.setInterrotto(true);
+            return false;
+        }
+
+        for (UtenteRequestDto u : daInserire) {
+            indiceTrigrammiService.aggiungiCodiceFiscale(u.getCodiceFiscaleUtente());
+        }
+        report.setRigheImportate(report.getRigheImportate() + daInserire.size());
+        return true;
+    }
+
+    private static double velocita(ImportReportDto report, long inizio) {
+        double secondi = (System.nanoTime() - inizio) / 1e9;
+        return secondi == 0 ? 0 : report.getRigheLette() / secondi;
+    }
+
+    private Sorgente sorgenteCsv(InputStream input) throws IOException {
+        LettoreCsv csv = new LettoreCsv(input);
+        csv.richiediColonne(COLONNE_OBBLIGATORIE);
+        return new Sorgente() {
+            @Override
+            public RigaUtente prossima() throws IOException {
+                Map<String, String> record = csv.leggi();
+                if (record == null) {
+                    return null;
+                }
+                UtenteRequestDto utente = new UtenteRequestDto();
+                utente.setCodiceFiscaleUtente(LettoreCsv.valore(record, "codiceFiscaleUtente"));
+                utente.setNome(LettoreCsv.valore(record, "nome"));
+                utente.setCognome(LettoreCsv.valore(record, "cognome"));
+                utente.setTelefono(LettoreCsv.valore(record, "telefono"));
+                utente.setEmail(LettoreCsv.valore(record, "email"));
+                utente.setIndirizzo(LettoreCsv.valore(record, "indirizzo"));
+                String dataNascita = LettoreCsv.valore(record, "dataNascita");
+                try {
+                    // Stesse regole di conversione delle date usate per il JSON delle API
+                    utente.setDataNascita(dataNascita == null ? null : objectMapper.convertValue(dataNascita, Date.class));
+                } catch (IllegalArgumentException e) {
+                    return new RigaUtente(csv.getRigaCorrente(), null, "Data di nascita non valida: " + dataNascita);
+                }
+                return new RigaUtente(csv.getRigaCorrente(), utente, null);
+            }
+
+            @Override
+            public void close() throws IOException {
+                csv.close();
+            }
+        };
+    }
+
+    private Sorgente sorgenteNdjson(InputStream input) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return new Sorgente() {
+            private long numeroRiga;
+
+            @Override
+            public RigaUtente prossima() throws IOException {
+                String linea;
+                do {
+                    linea = reader.readLine();
+                    if (linea == null) {
+                        return null;
+                    }
+                    numeroRiga++;
+                } while (linea.isBlank());
+                try {
+                    return new RigaUtente(numeroRiga, objectMapper.readValue(linea, UtenteRequestDto.class), null);
+                } catch (JsonProcessingException e) {
+                    return new RigaUtente(numeroRiga, null, "JSON non valido: " + e.getOriginalMessage());
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,207 @@
+package com.stage.concessionario.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.stage.concessionario.dto.ImportReportDto;
+import com.stage.concessionario.dto.VeicoloRequestDto;
+import com.stage.concessionario.repository.VeicoloRepository;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Import massivo dei veicoli da CSV.
+ * Il file è letto in streaming e processato a blocchi di import.batch-size righe:
+ * per ogni blocco i telai già presenti sono cercati con una sola query IN e le righe valide
+ * sono inserite con un batch JDBC nella stessa transazione. Le righe errate sono riportate
+ * nel resoconto con il loro numero di riga e non bloccano il resto del file.
+ */
+@Service
+public class ImportVeicoliService {
+
+    static final String[] COLONNE_OBBLIGATORIE = {
+            "numeroTelaio", "marca", "modello", "annoImmatricolazione", "chilometraggio" };
+
+    private static final String INSERT_VEICOLO = "INSERT INTO veicolo "
+            + "(numero_telaio, marca, modello, anno_immatricolazione, chilometraggio, disponibile, id_configurazione, versione) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+
+    // Configurazione assegnata quando la colonna idConfigurazione è vuota, come in VeicoloService.insert
+    private static final int CONFIGURAZIONE_DEFAULT = 1;
+
+    private final VeicoloRepository veicoloRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final CacheConfigurazioniService cacheConfigurazioni;
+    private final IndiceTrigrammiService indiceTrigrammiService;
+    private final SuggerimentiVeicoliService suggerimentiVeicoliService;
+    private final ContatoriModificheService contatoriModifiche;
+    private final int dimensioneBatch;
+    private static final Logger logger = LogManager.getLogger(ImportVeicoliService.class);
+
+    private record RigaVeicolo(long riga, VeicoloRequestDto veicolo) {}
+
+    public ImportVeicoliService(VeicoloRepository veicoloRepository, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, Validator validator,
+            CacheConfigurazioniService cacheConfigurazioni, IndiceTrigrammiService indiceTrigrammiService,
+            SuggerimentiVeicoliService suggerimentiVeicoliService, ContatoriModificheService contatoriModifiche,
+            @Value("${import.batch-size:500}") int dimensioneBatch) {
+        this.veicoloRepository = veicoloRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.cacheConfigurazioni = cacheConfigurazioni;
+        this.indiceTrigrammiService = indiceTrigrammiService;
+        this.suggerimentiVeicoliService = suggerimentiVeicoliService;
+        this.contatoriModifiche = contatoriModifiche;
+        this.dimensioneBatch = dimensioneBatch;
+    }
+
+    public ImportReportDto importa(InputStream input) throws IOException {
+        long inizio = System.nanoTime();
+        ImportReportDto report = new ImportReportDto();
+
+        try (LettoreCsv csv = new LettoreCsv(input)) {
+            csv.richiediColonne(COLONNE_OBBLIGATORIE);
+
+            // Chiave: telaio, per scartare i duplicati all'interno dello stesso blocco
+            Map<String, RigaVeicolo> blocco = new LinkedHashMap<>();
+            Map<String, String> record;
+            while ((record = csv.leggi()) != null) {
+                report.setRigheLette(report.getRigheLette() + 1);
+                long riga = csv.getRigaCorrente();
+
+                VeicoloRequestDto veicolo = converti(record, riga, report);
+                if (veicolo == null) {
+                    continue;
+                }
+                if (blocco.containsKey(veicolo.getNumeroTelaio())) {
+                    report.aggiungiErrore(riga, veicolo.getNumeroTelaio(), "Numero telaio duplicato nel file");
+                    continue;
+                }
+                blocco.put(veicolo.getNumeroTelaio(), new RigaVeicolo(riga, veicolo));
+
+                if (blocco.size() >= dimensioneBatch) {
+                    scrivi(blocco, report);
+                    blocco.clear();
+                    report.setUltimaRigaConfermata(riga);
+                }
+            }
+            scrivi(blocco, report);
+            report.setUltimaRigaConfermata(csv.getRigaCorrente());
+        }
+        report.concludi(inizio);
+
+        logger.info("Import veicoli completato: {} righe lette, {} importate, {} errori",
+                report.getRigheLette(), report.getRigheImportate(), report.getErroriTotali());
+        return report;
+    }
+
+    private VeicoloRequestDto converti(Map<String, String> record, long riga, ImportReportDto report) {
+        String telaio = LettoreCsv.valore(record, "numeroTelaio");
+        VeicoloRequestDto veicolo = new VeicoloRequestDto();
+        // I numeri di telaio sono memorizzati in maiuscolo
+        veicolo.setNumeroTelaio(telaio == null ? null : telaio.toUpperCase(Locale.ROOT));
+        veicolo.setMarca(LettoreCsv.valore(record, "marca"));
+        veicolo.setModello(LettoreCsv.valore(record, "modello"));
+        try {
+            veicolo.setAnnoImmatricolazione(intero(record, "annoImmatricolazione", 0));
+            veicolo.setChilometraggio(intero(record, "chilometraggio", 0));
+            veicolo.setIdConfigurazione(intero(record, "idConfigurazione", CONFIGURAZIONE_DEFAULT));
+        } catch (NumberFormatException e) {
+            report.aggiungiErrore(riga, telaio, "Valore numerico non valido: " + e.getMessage());
+            return null;
+        }
+        String disponibile = LettoreCsv.valore(record, "disponibile");
+        veicolo.setDisponibile(disponibile == null || Boolean.parseBoolean(disponibile));
+
+        Set<ConstraintViolation<VeicoloRequestDto>> violazioni = validator.validate(veicolo);
+        if (!violazioni.isEmpty()) {
+            report.aggiungiErrore(riga, telaio, violazioni.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        if (cacheConfigurazioni.perId(veicolo.getIdConfigurazione()).isEmpty()) {
+            report.aggiungiErrore(riga, telaio, "Configurazione " + veicolo.getIdConfigurazione() + " non esistente");
+            return null;
+        }
+        return veicolo;
+    }
+
+    private void scrivi(Map<String, RigaVeicolo> blocco, ImportReportDto report) {
+        if (blocco.isEmpty()) {
+            return;
+        }
+
+        // Una sola query per tutti i telai del blocco
+        Set<String> esistenti = new HashSet<>(veicoloRepository.findNumeriTelaioEsistenti(blocco.keySet()));
+        List<RigaVeicolo> daInserire = new ArrayList<>(blocco.size());
+        for (RigaVeicolo r : blocco.values()) {
+            if (esistenti.contains(r.veicolo().getNumeroTelaio())) {
+                report.aggiungiErrore(r.riga(), r.veicolo().getNumeroTelaio(), "Esiste già un veicolo con questo numero telaio");
+            } else {
+                daInserire.add(r);
+            }
+        }
+        if (daInserire.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_VEICOLO, daInserire, dimensioneBatch, (ps, r) -> {
+                    VeicoloRequestDto v = r.veicolo();
+                    ps.setString(1, v.getNumeroTelaio());
+                    ps.setString(2, v.getMarca());
+                    ps.setString(3, v.getModello());
+                    ps.setInt(4, v.getAnnoImmatricolazione());
+                    ps.setInt(5, v.getChilometraggio());
+                    ps.setBoolean(6, v.isDisponibile());
+                    ps.setInt(7, v.getIdConfigurazione());
+                });
+                // Ogni blocco confermato è subito visibile ai client, con il contatore aggiornato subito dopo il commit
+                contatoriModifiche.modificata(Tabella.VEICOLI);
+            });
+        } catch (DataAccessException e) {
+            // Il blocco è annullato per intero (es. telaio inserito nel frattempo da un'altra richiesta)
+            logger.error("Errore durante l'inserimento di un blocco di veicoli", e);
+            for (RigaVeicolo r : daInserire) {
+                report.aggiungiErrore(r.riga(), r.veicolo().getNumeroTelaio(),
+                        "Blocco non inserito: " + e.getMostSpecificCause().getMessage());
+            }
+            return;
+        }
+
+        for (RigaVeicolo r : daInserire) {
+            indiceTrigrammiService.aggiungiTelaio(r.veicolo().getNumeroTelaio());
+            suggerimentiVeicoliService.veicoloAggiunto(r.veicolo().getMarca(), r.veicolo().getModello());
+        }
+        report.setRigheImportate(report.getRigheImportate() + daInserire.size());
+    }
+
+    private static int intero(Map<String, String> record, String colonna, int predefinito) {
+        String valore = LettoreCsv.valore(record, colonna);
+        return valore == null ? predefinito : Integer.parseInt(valore);
+    }
+}
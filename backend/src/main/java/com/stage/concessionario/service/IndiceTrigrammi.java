@@ -0,0 +1,96 @@
+package com.stage.concessionario.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice invertito a trigrammi per la ricerca di sottostringhe su chiavi brevi
+ * (numeri di telaio, codici fiscali). Ogni trigramma punta all'insieme delle chiavi che lo contengono:
+ * una ricerca interseca le liste dei trigrammi del frammento e verifica i candidati rimasti,
+ * senza scorrere tutte le chiavi.
+ * Le chiavi sono normalizzate in maiuscolo. La struttura è thread-safe.
+ */
+public class IndiceTrigrammi {
+
+    static final int N = 3;
+
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    public void aggiungi(String chiave) {
+        if (chiave == null) {
+            return;
+        }
+        String normalizzata = normalizza(chiave);
+        for (String trigramma : trigrammi(normalizzata)) {
+            postings.computeIfAbsent(trigramma, t -> ConcurrentHashMap.newKeySet()).add(normalizzata);
+        }
+    }
+
+    public void rimuovi(String chiave) {
+        if (chiave == null) {
+            return;
+        }
+        String normalizzata = normalizza(chiave);
+        for (String trigramma : trigrammi(normalizzata)) {
+            Set<String> chiavi = postings.get(trigramma);
+            if (chiavi != null) {
+                chiavi.remove(normalizzata);
+            }
+        }
+    }
+
+    /**
+     * Restituisce le chiavi che contengono il frammento.
+     * Un Optional vuoto indica che il frammento è troppo corto per essere risolto dall'indice
+     * (meno di tre caratteri) e che il chiamante deve ripiegare su una ricerca LIKE.
+     */
+    public Optional<Set<String>> cerca(String frammento) {
+        if (frammento == null) {
+            return Optional.empty();
+        }
+        String normalizzato = normalizza(frammento.trim());
+        if (normalizzato.length() < N) {
+            return Optional.empty();
+        }
+
+        // Si parte dalla lista più corta per ridurre il numero di confronti
+        List<Set<String>> liste = new ArrayList<>();
+        for (String trigramma : trigrammi(normalizzato)) {
+            Set<String> chiavi = postings.get(trigramma);
+            if (chiavi == null || chiavi.isEmpty()) {
+                return Optional.of(Collections.emptySet());
+            }
+            liste.add(chiavi);
+        }
+        liste.sort(Comparator.comparingInt(Set::size));
+
+        Set<String> risultato = new HashSet<>();
+        for (String candidato : liste.get(0)) {
+            // La presenza di tutti i trigrammi non garantisce la contiguità: serve la verifica finale
+            if (candidato.contains(normalizzato)) {
+                risultato.add(candidato);
+            }
+        }
+        return Optional.of(risultato);
+    }
+
+    private static String normalizza(String valore) {
+        return valore.toUpperCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrammi(String valore) {
+        Set<String> trigrammi = new HashSet<>();
+        for (int i = 0; i + N <= valore.length(); i++) {
+            trigrammi.add(valore.substring(i, i + N));
+        }
+        return trigrammi;
+    }
+}
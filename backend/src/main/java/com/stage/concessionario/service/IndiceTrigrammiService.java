@@ -0,0 +1,170 @@
+package com.stage.concessionario.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.stage.concessionario.repository.UtenteRepository;
+import com.stage.concessionario.repository.VeicoloRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Mantiene in memoria gli indici a trigrammi dei numeri di telaio e dei codici fiscali,
+ * usati per risolvere le ricerche per frammento (es. le ultime 6 cifre del telaio)
+ * con una lookup sulla chiave primaria invece di un LIKE '%x%'.
+ * Gli indici sono costruiti all'avvio, aggiornati dai servizi a ogni inserimento o eliminazione
+ * e ricostruiti periodicamente dal database, per includere le righe scritte da altri nodi o
+ * direttamente sul database e togliere quelle eliminate altrove.
+ * Un frammento senza candidati ripiega sul LIKE: l'indice locale può non conoscere ancora la riga.
+ */
+@Service
+public class IndiceTrigrammiService {
+
+    // Oltre questa soglia una lista IN non è più conveniente rispetto alla scansione
+    public static final int MAX_CANDIDATI = 1000;
+
+    private final VeicoloRepository veicoloRepository;
+    private final UtenteRepository utenteRepository;
+    private final ScheduledExecutorService risincronizzazione;
+    private volatile IndiceTrigrammi telai = new IndiceTrigrammi();
+    private volatile IndiceTrigrammi codiciFiscali = new IndiceTrigrammi();
+    // Durante una ricostruzione le modifiche dei servizi vanno anche nei nuovi indici,
+    // che altrimenti perderebbero le righe confermate dopo la lettura dal database
+    private volatile IndiceTrigrammi telaiInCostruzione;
+    private volatile IndiceTrigrammi codiciFiscaliInCostruzione;
+    private volatile boolean pronto = false;
+    private static final Logger logger = LogManager.getLogger(IndiceTrigrammiService.class);
+
+    public IndiceTrigrammiService(VeicoloRepository veicoloRepository, UtenteRepository utenteRepository,
+            @Value("${indici.trigrammi.risincronizzazione:PT5M}") Duration intervallo) {
+        this.veicoloRepository = veicoloRepository;
+        this.utenteRepository = utenteRepository;
+        this.risincronizzazione = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "indici-trigrammi");
+            t.setDaemon(true);
+            return t;
+        });
+        this.risincronizzazione.scheduleWithFixedDelay(this::risincronizza, intervallo.toSeconds(),
+                intervallo.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void costruisciIndici() {
+        ricostruisci();
+        pronto = true;
+        logger.info("Indici a trigrammi per telai e codici fiscali costruiti");
+    }
+
+    private void risincronizza() {
+        if (!pronto) {
+            return;
+        }
+        try {
+            ricostruisci();
+            logger.debug("Indici a trigrammi risincronizzati con il database");
+        } catch (RuntimeException e) {
+            // Un'eccezione non gestita fermerebbe l'esecuzione periodica
+            logger.error("Errore durante la risincronizzazione degli indici a trigrammi", e);
+        }
+    }
+
+    private synchronized void ricostruisci() {
+        IndiceTrigrammi nuoviTelai = new IndiceTrigrammi();
+        IndiceTrigrammi nuoviCodiciFiscali = new IndiceTrigrammi();
+        telaiInCostruzione = nuoviTelai;
+        codiciFiscaliInCostruzione = nuoviCodiciFiscali;
+        try {
+            veicoloRepository.findAllNumeriTelaio().forEach(nuoviTelai::aggiungi);
+            utenteRepository.findAllCodiciFiscali().forEach(nuoviCodiciFiscali::aggiungi);
+            telai = nuoviTelai;
+            codiciFiscali = nuoviCodiciFiscali;
+        } finally {
+            telaiInCostruzione = null;
+            codiciFiscaliInCostruzione = null;
+        }
+    }
+
+    // Le modifiche agli indici seguono la transazione del chiamante (dopo il commit, se in transazione):
+    // un rollback non lascia nell'indice telai o codici fiscali che il database non contiene
+    public void aggiungiTelaio(String numeroTelaio) {
+        dopoCommit(() -> {
+            telai.aggiungi(numeroTelaio);
+            IndiceTrigrammi inCostruzione = telaiInCostruzione;
+            if (inCostruzione != null) {
+                inCostruzione.aggiungi(numeroTelaio);
+            }
+        });
+    }
+
+    public void rimuoviTelaio(String numeroTelaio) {
+        dopoCommit(() -> {
+            telai.rimuovi(numeroTelaio);
+            IndiceTrigrammi inCostruzione = telaiInCostruzione;
+            if (inCostruzione != null) {
+                inCostruzione.rimuovi(numeroTelaio);
+            }
+        });
+    }
+
+    public void aggiungiCodiceFiscale(String codiceFiscale) {
+        dopoCommit(() -> {
+            codiciFiscali.aggiungi(codiceFiscale);
+            IndiceTrigrammi inCostruzione = codiciFiscaliInCostruzione;
+            if (inCostruzione != null) {
+                inCostruzione.aggiungi(codiceFiscale);
+            }
+        });
+    }
+
+    private static void dopoCommit(Runnable modifica) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    modifica.run();
+                }
+            });
+        } else {
+            modifica.run();
+        }
+    }
+
+    /**
+     * Numeri di telaio che contengono il frammento, oppure Optional vuoto se l'indice non
+     * può essere usato (indice non ancora pronto, frammento corto, nessun candidato o troppi candidati).
+     */
+    public Optional<Set<String>> cercaTelai(String frammento) {
+        return cerca(telai, frammento);
+    }
+
+    public Optional<Set<String>> cercaCodiciFiscali(String frammento) {
+        return cerca(codiciFiscali, frammento);
+    }
+
+    private Optional<Set<String>> cerca(IndiceTrigrammi indice, String frammento) {
+        if (!pronto || frammento == null || frammento.isEmpty()) {
+            return Optional.empty();
+        }
+        // Senza candidati un IN vuoto nasconderebbe le righe non ancora note all'indice locale
+        return indice.cerca(frammento)
+                .filter(candidati -> !candidati.isEmpty() && candidati.size() <= MAX_CANDIDATI);
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        risincronizzazione.shutdownNow();
+    }
+}
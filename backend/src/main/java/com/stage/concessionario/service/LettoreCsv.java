@@ -0,0 +1,141 @@
+package com.stage.concessionario.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lettura in streaming di un CSV con intestazione, una riga alla volta.
+ * Il separatore (',' o ';', come esportato da Excel in italiano) è dedotto dall'intestazione;
+ * i campi tra doppi apici possono contenere separatori, apici raddoppiati e a capo.
+ * I nomi delle colonne sono confrontati senza distinzione tra maiuscole e minuscole.
+ */
+public class LettoreCsv implements AutoCloseable {
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> colonne = new HashMap<>();
+    private final char separatore;
+    private long numeroRiga;
+    private long rigaCorrente;
+
+    public LettoreCsv(InputStream input) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String intestazione = reader.readLine();
+        if (intestazione == null) {
+            throw new IllegalArgumentException("Il file CSV è vuoto");
+        }
+        numeroRiga = 1;
+        // Eventuale BOM UTF-8 lasciato da Excel
+        if (intestazione.startsWith("\uFEFF")) {
+            intestazione = intestazione.substring(1);
+        }
+        this.separatore = intestazione.indexOf(';') >= 0 && intestazione.indexOf(',') < 0 ? ';' : ',';
+        List<String> nomi = dividi(intestazione);
+        for (int i = 0; i < nomi.size(); i++) {
+            colonne.put(nomi.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    public void richiediColonne(String... nomi) {
+        for (String nome : nomi) {
+            if (!colonne.containsKey(nome.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Colonna obbligatoria mancante nel CSV: " + nome);
+            }
+        }
+    }
+
+    /**
+     * Legge il record successivo, saltando le righe vuote.
+     * @return i valori per nome di colonna, oppure null a fine file
+     */
+    public Map<String, String> leggi() throws IOException {
+        String linea;
+        do {
+            linea = reader.readLine();
+            if (linea == null) {
+                return null;
+            }
+            numeroRiga++;
+        } while (linea.isBlank());
+        rigaCorrente = numeroRiga;
+
+        // Un campo tra apici non chiuso continua sulla riga successiva
+        StringBuilder record = new StringBuilder(linea);
+        while (apiciAperti(record)) {
+            String continuazione = reader.readLine();
+            if (continuazione == null) {
+                break;
+            }
+            numeroRiga++;
+            record.append('\n').append(continuazione);
+        }
+
+        List<String> valori = dividi(record.toString());
+        Map<String, String> risultato = new HashMap<>();
+        for (Map.Entry<String, Integer> colonna : colonne.entrySet()) {
+            int indice = colonna.getValue();
+            String valore = indice < valori.size() ? valori.get(indice).trim() : "";
+            risultato.put(colonna.getKey(), valore.isEmpty() ? null : valore);
+        }
+        return risultato;
+    }
+
+    // Numero di riga (1 = intestazione) in cui inizia l'ultimo record letto
+    public long getRigaCorrente() {
+        return rigaCorrente;
+    }
+
+    public static String valore(Map<String, String> record, String colonna) {
+        return record.get(colonna.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private List<String> dividi(String linea) {
+        List<String> valori = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean traApici = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (traApici) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    traApici = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                traApici = true;
+            } else if (c == separatore) {
+                valori.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        valori.add(campo.toString());
+        return valori;
+    }
+
+    private static boolean apiciAperti(CharSequence record) {
+        int apici = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') {
+                apici++;
+            }
+        }
+        return apici % 2 != 0;
+    }
+}
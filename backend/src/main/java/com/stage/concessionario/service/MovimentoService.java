@@ -3,22 +3,33 @@ package com.stage.concessionario.service;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.stage.concessionario.dto.CursorPageDto;
 import com.stage.concessionario.dto.MovimentoRequestDto;
 import com.stage.concessionario.dto.MovimentoResponseDto;
+import com.stage.concessionario.dto.PageResponseDto;
 import com.stage.concessionario.mapper.MovimentoMapper;
 import com.stage.concessionario.model.Movimento;
 import com.stage.concessionario.model.TipoMovimento;
 import com.stage.concessionario.model.Utente;
 import com.stage.concessionario.model.Veicolo;
 import com.stage.concessionario.repository.MovimentoRepository;
+import com.stage.concessionario.repository.MovimentoSpecifications;
 import com.stage.concessionario.repository.UtenteRepository;
 import com.stage.concessionario.repository.VeicoloRepository;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
 
 @Service
 public class MovimentoService {
@@ -27,29 +38,53 @@ public class MovimentoService {
     private final UtenteRepository utenteRepository;
     private final VeicoloRepository veicoloRepository;
     private final MovimentoMapper movimentoMapper;
+    private final IndiceTrigrammiService indiceTrigrammiService;
+    private final CacheVeicoliService cacheVeicoli;
+    private final PrenotazioniService prenotazioniService;
+    private final ContatoriModificheService contatoriModifiche;
     private static final Logger logger = LogManager.getLogger(MovimentoService.class);
 
+    // Stessi limiti delle liste paginate (spring.data.web.pageable.*)
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    // Solo colonne indicizzate, per evitare ordinamenti su file
+    private static final Set<String> ORDINAMENTI_CONSENTITI = Set.of("idMovimento", "dataMovimento");
+    private static final Sort ORDINAMENTO_KEYSET = Sort.by(Sort.Direction.DESC, "dataMovimento", "idMovimento");
+
     public MovimentoService(MovimentoRepository movimentoRepository,
             UtenteRepository utenteRepository,
             VeicoloRepository veicoloRepository,
-            MovimentoMapper movimentoMapper) {
+            MovimentoMapper movimentoMapper,
+            IndiceTrigrammiService indiceTrigrammiService,
+            CacheVeicoliService cacheVeicoli,
+            PrenotazioniService prenotazioniService,
+            ContatoriModificheService contatoriModifiche,
+            @Value("${spring.data.web.pageable.default-page-size:20}") int defaultPageSize,
+            @Value("${spring.data.web.pageable.max-page-size:100}") int maxPageSize) {
         this.movimentoRepository = movimentoRepository;
         this.utenteRepository = utenteRepository;
         this.veicoloRepository = veicoloRepository;
         this.movimentoMapper = movimentoMapper;
+        this.indiceTrigrammiService = indiceTrigrammiService;
+        this.cacheVeicoli = cacheVeicoli;
+        this.prenotazioniService = prenotazioniService;
+        this.contatoriModifiche = contatoriModifiche;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
-    public List<MovimentoResponseDto> getMovimenti() {
-        List<Movimento> movimenti = movimentoRepository.findAll();
-        logger.info("Lista movimenti visualizzata correttamente");
-        return movimenti.stream().map(movimentoMapper::toDto).collect(Collectors.toList());
+    public PageResponseDto<MovimentoResponseDto> getMovimenti(Pageable pageable) {
+        Pageable paginazione = PaginazioneHelper.conOrdinamentoConsentito(pageable, ORDINAMENTI_CONSENTITI, "idMovimento");
+        Page<MovimentoResponseDto> movimenti = movimentoRepository.findAllDto(paginazione);
+        logger.info("Lista movimenti visualizzata correttamente (pagina {})", paginazione.getPageNumber());
+        return PaginazioneHelper.toDto(movimenti);
     }
 
     public MovimentoResponseDto getMovimentoById(Integer id) {
-        Optional<Movimento> movimento = movimentoRepository.findById(id);
+        Optional<MovimentoResponseDto> movimento = movimentoRepository.findDtoById(id);
         if (movimento.isPresent()) {
             logger.info("Movimento con ID {} trovato correttamente", id);
-            return movimentoMapper.toDto(movimento.get());
+            return movimento.get();
         } else {
             logger.error("Movimento con ID {} non esistente", id);
             return null;
@@ -57,68 +92,87 @@ public class MovimentoService {
     }
 
     public List<MovimentoResponseDto> getMovimentiByUtente(String codiceFiscale) {
-        List<Movimento> movimenti = movimentoRepository.findByUtente_CodiceFiscaleUtente(codiceFiscale);
+        List<MovimentoResponseDto> movimenti = movimentoRepository.findDtoByUtente(codiceFiscale);
         logger.info("Lista movimenti per utente {} visualizzata correttamente", codiceFiscale);
-        return movimenti.stream().map(movimentoMapper::toDto).collect(Collectors.toList());
+        return movimenti;
     }
 
     public List<MovimentoResponseDto> getMovimentiByVeicolo(String numeroTelaio) {
-        List<Movimento> movimenti = movimentoRepository.findByVeicoloNumeroTelaio(numeroTelaio);
+        List<MovimentoResponseDto> movimenti = movimentoRepository.findDtoByVeicolo(numeroTelaio);
         logger.info("Lista movimenti per veicolo {} visualizzata correttamente", numeroTelaio);
-        return movimenti.stream().map(movimentoMapper::toDto).collect(Collectors.toList());
+        return movimenti;
     }
     
-    public List<MovimentoResponseDto> searchMovimenti(
+    public CursorPageDto<MovimentoResponseDto> searchMovimenti(
             TipoMovimento tipoMovimento, 
             String numeroTelaio, 
             String codiceFiscaleUtente, 
             Date dataInizio, 
-            Date dataFine) {
+            Date dataFine,
+            String cursor,
+            Integer size) {
         
-        List<Movimento> movimenti = movimentoRepository.findAll();
+        int pageSize = (size == null || size <= 0) ? defaultPageSize : Math.min(size, maxPageSize);
         
-        // Filtra per tipo movimento
-        if (tipoMovimento != null) {
-            movimenti = movimenti.stream()
-                    .filter(m -> m.getTipoMovimento() == tipoMovimento)
-                    .collect(Collectors.toList());
+        // Decodifica il cursore "<timestamp data_movimento>_<id_movimento>" dell'ultima riga della pagina precedente
+        Date cursoreData = null;
+        Integer cursoreId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parti = cursor.split("_");
+            try {
+                if (parti.length != 2) {
+                    throw new NumberFormatException(cursor);
+                }
+                cursoreData = new Date(Long.parseLong(parti[0]));
+                cursoreId = Integer.valueOf(parti[1]);
+            } catch (NumberFormatException e) {
+                logger.error("Cursore di paginazione non valido: {}", cursor);
+                throw new IllegalArgumentException("Cursore di paginazione non valido");
+            }
         }
         
-        // Filtra per numero telaio
-        if (numeroTelaio != null && !numeroTelaio.isEmpty()) {
-            movimenti = movimenti.stream()
-                    .filter(m -> m.getVeicolo().getNumeroTelaio().contains(numeroTelaio))
-                    .collect(Collectors.toList());
-        }
+        // I frammenti di telaio e codice fiscale sono risolti dall'indice a trigrammi quando possibile
+        Specification<Movimento> filtroTelaio = indiceTrigrammiService.cercaTelai(numeroTelaio)
+                .map(MovimentoSpecifications::conNumeroTelaioIn)
+                .orElseGet(() -> MovimentoSpecifications.conNumeroTelaio(numeroTelaio));
+        Specification<Movimento> filtroCodiceFiscale = indiceTrigrammiService.cercaCodiciFiscali(codiceFiscaleUtente)
+                .map(MovimentoSpecifications::conCodiceFiscaleIn)
+                .orElseGet(() -> MovimentoSpecifications.conCodiceFiscale(codiceFiscaleUtente));
         
-        // Filtra per codice fiscale utente
-        if (codiceFiscaleUtente != null && !codiceFiscaleUtente.isEmpty()) {
-            movimenti = movimenti.stream()
-                    .filter(m -> m.getUtente().getCodiceFiscaleUtente().contains(codiceFiscaleUtente) ||
-                            (m.isHasComproprietario() && m.getComproprietario() != null && 
-                             m.getComproprietario().getCodiceFiscaleUtente().contains(codiceFiscaleUtente)))
-                    .collect(Collectors.toList());
-        }
+        Specification<Movimento> spec = Specification.where(MovimentoSpecifications.conTipo(tipoMovimento))
+                .and(filtroTelaio)
+                .and(filtroCodiceFiscale)
+                .and(MovimentoSpecifications.dataDa(dataInizio))
+                .and(MovimentoSpecifications.dataA(dataFine))
+                .and(MovimentoSpecifications.dopoCursore(cursoreData, cursoreId));
+        
+        // Si legge una riga in più per sapere se esiste una pagina successiva senza eseguire un COUNT
+        List<MovimentoResponseDto> movimenti = movimentoRepository.cercaDto(spec, ORDINAMENTO_KEYSET, pageSize + 1);
         
-        // Filtra per data inizio
-        if (dataInizio != null) {
-            movimenti = movimenti.stream()
-                    .filter(m -> m.getDataMovimento().compareTo(dataInizio) >= 0)
-                    .collect(Collectors.toList());
+        boolean hasNext = movimenti.size() > pageSize;
+        if (hasNext) {
+            movimenti = movimenti.subList(0, pageSize);
         }
         
-        // Filtra per data fine
-        if (dataFine != null) {
-            movimenti = movimenti.stream()
-                    .filter(m -> m.getDataMovimento().compareTo(dataFine) <= 0)
-                    .collect(Collectors.toList());
+        String nextCursor = null;
+        if (hasNext) {
+            MovimentoResponseDto ultimo = movimenti.get(movimenti.size() - 1);
+            nextCursor = ultimo.getDataMovimento().getTime() + "_" + ultimo.getIdMovimento();
         }
         
         logger.info("Ricerca movimenti completata: trovati {} risultati", movimenti.size());
-        return movimenti.stream().map(movimentoMapper::toDto).collect(Collectors.toList());
+        return new CursorPageDto<>(movimenti, pageSize, hasNext, nextCursor);
     }
 
-    public MovimentoResponseDto insert(MovimentoRequestDto movimentoRequestDto) {
+    /**
+     * La disponibilità del veicolo è aggiornata con un solo UPDATE condizionato, nella stessa
+     * transazione dell'inserimento del movimento, senza leggere il veicolo con blocco: tra due
+     * vendite concorrenti dello stesso veicolo solo una modifica la riga, l'altra riceve
+     * VeicoloNonDisponibileException.
+     * L'operatore è chi registra il movimento: può vendere i veicoli prenotati a suo nome.
+     */
+    @Transactional
+    public MovimentoResponseDto insert(MovimentoRequestDto movimentoRequestDto, String operatore) {
         logger.debug("Tentativo di inserimento movimento: {}", movimentoRequestDto);
 
         // Verifica che l'utente esista
@@ -128,13 +182,6 @@ public class MovimentoService {
             logger.error("Utente con codice fiscale {} non esistente", movimentoRequestDto.getCodiceFiscaleUtente());
             return null;
         }
-
-        // Verifica che il veicolo esista
-        Optional<Veicolo> veicolo = veicoloRepository.findByNumeroTelaio(movimentoRequestDto.getNumeroTelaio());
-        if (!veicolo.isPresent()) {
-            logger.error("Veicolo con numero telaio {} non esistente", movimentoRequestDto.getNumeroTelaio());
-            return null;
-        }
         
         // Verifica che il comproprietario esista se presente
         Utente comproprietario = null;
@@ -155,14 +202,43 @@ public class MovimentoService {
             }
         }
 
+        String numeroTelaio = movimentoRequestDto.getNumeroTelaio();
+        TipoMovimento tipoMovimento = movimentoRequestDto.getTipoMovimento() != null
+                ? movimentoRequestDto.getTipoMovimento() : TipoMovimento.VENDITA;
+
+        // Telaio come memorizzato: è la chiave usata dal registro delle prenotazioni
+        Optional<String> telaioMemorizzato = veicoloRepository.findNumeroTelaioMemorizzato(numeroTelaio);
+        if (!telaioMemorizzato.isPresent()) {
+            logger.error("Veicolo con numero telaio {} non esistente", numeroTelaio);
+            return null;
+        }
+        String telaio = telaioMemorizzato.get();
+
+        // Aggiorna la disponibilità del veicolo in base al tipo di movimento; la riga resta bloccata
+        // solo fino al commit dell'inserimento
+        if (tipoMovimento == TipoMovimento.VENDITA) {
+            prenotazioniService.verificaVendibile(telaio, operatore);
+            if (veicoloRepository.segnaVenduto(telaio) == 0) {
+                logger.warn("Vendita rifiutata: veicolo con numero telaio {} non disponibile", numeroTelaio);
+                throw new VeicoloNonDisponibileException(numeroTelaio);
+            }
+            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a false (vendita)", numeroTelaio);
+            prenotazioniService.veicoloNonPiuDisponibile(telaio);
+        } else if (tipoMovimento == TipoMovimento.ACQUISTO) {
+            if (veicoloRepository.segnaDisponibile(telaio) == 0) {
+                logger.error("Veicolo con numero telaio {} non esistente", numeroTelaio);
+                return null;
+            }
+            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a true (acquisto)", numeroTelaio);
+        }
+        cacheVeicoli.invalidaDopoCommit(telaio);
+
         Movimento movimento = new Movimento();
         movimento.setUtente(utente.get());
-        movimento.setVeicolo(veicolo.get());
+        movimento.setVeicolo(veicoloRepository.getReferenceById(telaio));
         movimento.setDataMovimento(
                 movimentoRequestDto.getDataMovimento() != null ? movimentoRequestDto.getDataMovimento() : new Date());
-        movimento.setTipoMovimento(
-                movimentoRequestDto.getTipoMovimento() != null ? movimentoRequestDto.getTipoMovimento()
-                        : TipoMovimento.VENDITA);
+        movimento.setTipoMovimento(tipoMovimento);
         movimento.setPrezzo(movimentoRequestDto.getPrezzo());
         
         // Gestione comproprietà
@@ -175,24 +251,20 @@ public class MovimentoService {
         }
 
         movimentoRepository.save(movimento);
-        
-        // Aggiorna la disponibilità del veicolo in base al tipo di movimento
-        Veicolo veicoloToUpdate = veicolo.get();
-        if (movimento.getTipoMovimento() == TipoMovimento.VENDITA) {
-            veicoloToUpdate.setDisponibile(false);
-            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a false (vendita)", veicoloToUpdate.getNumeroTelaio());
-        } else if (movimento.getTipoMovimento() == TipoMovimento.ACQUISTO) {
-            veicoloToUpdate.setDisponibile(true);
-            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a true (acquisto)", veicoloToUpdate.getNumeroTelaio());
-        }
-        veicoloRepository.save(veicoloToUpdate);
-
+        contatoriModifiche.modificata(Tabella.MOVIMENTI, Tabella.VEICOLI);
         logger.info("Movimento inserito correttamente con ID: {}", movimento.getIdMovimento());
 
         return movimentoMapper.toDto(movimento);
     }
 
-    public MovimentoResponseDto update(MovimentoRequestDto movimentoRequestDto, Integer id) {
+    // Movimento e disponibilità del veicolo sono scritti nella stessa transazione, entrambi con controllo di versione
+    // L'operatore serve per la verifica delle prenotazioni quando il movimento diventa una vendita
+    @Transactional
+    public MovimentoResponseDto update(MovimentoRequestDto movimentoRequestDto, Integer id, String operatore) {
+        // Senza versione l'ultima scrittura sovrascriverebbe in silenzio le modifiche concorrenti
+        if (movimentoRequestDto.getVersione() == null) {
+            throw new IllegalArgumentException("La versione del movimento è obbligatoria per l'aggiornamento");
+        }
         Optional<Movimento> existingMovimentoOpt = movimentoRepository.findById(id);
 
         if (!existingMovimentoOpt.isPresent()) {
@@ -201,87 +273,108 @@ public class MovimentoService {
         }
 
         Movimento existingMovimento = existingMovimentoOpt.get();
+        if (movimentoRequestDto.getVersione() != existingMovimento.getVersione()) {
+            logger.warn("Movimento con ID {} modificato da un'altra richiesta (versione {}, attesa {})",
+                    id, existingMovimento.getVersione(), movimentoRequestDto.getVersione());
+            throw new ObjectOptimisticLockingFailureException(Movimento.class, id);
+        }
+
+        // Tutte le ricerche e le verifiche precedono le modifiche: l'entità è gestita, quindi una
+        // modifica seguita da return null verrebbe comunque scritta al commit
 
         // Verifica che l'utente esista se è stato cambiato
-        if (!movimentoRequestDto.getCodiceFiscaleUtente()
-                .equals(existingMovimento.getUtente().getCodiceFiscaleUtente())) {
-            Optional<Utente> utente = utenteRepository
+        Utente utente = existingMovimento.getUtente();
+        if (!movimentoRequestDto.getCodiceFiscaleUtente().equals(utente.getCodiceFiscaleUtente())) {
+            Optional<Utente> utenteOpt = utenteRepository
                     .findByCodiceFiscaleUtente(movimentoRequestDto.getCodiceFiscaleUtente());
-            if (!utente.isPresent()) {
+            if (!utenteOpt.isPresent()) {
                 logger.error("Utente con codice fiscale {} non esistente",
                         movimentoRequestDto.getCodiceFiscaleUtente());
                 return null;
             }
-            existingMovimento.setUtente(utente.get());
+            utente = utenteOpt.get();
         }
 
         // Verifica che il veicolo esista se è stato cambiato
-        if (!movimentoRequestDto.getNumeroTelaio().equals(existingMovimento.getVeicolo().getNumeroTelaio())) {
-            Optional<Veicolo> veicolo = veicoloRepository.findByNumeroTelaio(movimentoRequestDto.getNumeroTelaio());
-            if (!veicolo.isPresent()) {
+        Veicolo veicolo = existingMovimento.getVeicolo();
+        String telaioPrecedente = veicolo.getNumeroTelaio();
+        if (!movimentoRequestDto.getNumeroTelaio().equals(telaioPrecedente)) {
+            Optional<Veicolo> veicoloOpt = veicoloRepository.findByNumeroTelaio(movimentoRequestDto.getNumeroTelaio());
+            if (!veicoloOpt.isPresent()) {
                 logger.error("Veicolo con numero telaio {} non esistente", movimentoRequestDto.getNumeroTelaio());
                 return null;
             }
-            existingMovimento.setVeicolo(veicolo.get());
+            veicolo = veicoloOpt.get();
         }
-        
-        // Gestione comproprietà
-        existingMovimento.setHasComproprietario(movimentoRequestDto.isHasComproprietario());
-        
+
+        // Verifica che il comproprietario esista se è stato cambiato
+        Utente comproprietario = null;
         if (movimentoRequestDto.isHasComproprietario()) {
-            // Verifica che il comproprietario esista se è stato cambiato
-            String currentComproprietarioCodiceFiscale = existingMovimento.getComproprietario() != null ? 
-                    existingMovimento.getComproprietario().getCodiceFiscaleUtente() : null;
-            
-            if (movimentoRequestDto.getCodiceFiscaleComproprietario() != null && 
-                    (currentComproprietarioCodiceFiscale == null || 
-                     !movimentoRequestDto.getCodiceFiscaleComproprietario().equals(currentComproprietarioCodiceFiscale))) {
-                
-                Optional<Utente> comproprietario = utenteRepository
-                        .findByCodiceFiscaleUtente(movimentoRequestDto.getCodiceFiscaleComproprietario());
-                if (!comproprietario.isPresent()) {
-                    logger.error("Comproprietario con codice fiscale {} non esistente",
-                            movimentoRequestDto.getCodiceFiscaleComproprietario());
+            comproprietario = existingMovimento.getComproprietario();
+            String codiceFiscaleComproprietario = movimentoRequestDto.getCodiceFiscaleComproprietario();
+            if (codiceFiscaleComproprietario != null && (comproprietario == null
+                    || !codiceFiscaleComproprietario.equals(comproprietario.getCodiceFiscaleUtente()))) {
+                Optional<Utente> comproprietarioOpt = utenteRepository.findByCodiceFiscaleUtente(codiceFiscaleComproprietario);
+                if (!comproprietarioOpt.isPresent()) {
+                    logger.error("Comproprietario con codice fiscale {} non esistente", codiceFiscaleComproprietario);
                     return null;
                 }
-                
-                // Verifica che il proprietario e il comproprietario siano diversi
-                if (existingMovimento.getUtente().getCodiceFiscaleUtente().equals(
-                        movimentoRequestDto.getCodiceFiscaleComproprietario())) {
-                    logger.error("Il proprietario e il comproprietario non possono essere la stessa persona");
-                    return null;
+                comproprietario = comproprietarioOpt.get();
+            }
+
+            // Verifica che il proprietario e il comproprietario siano diversi
+            if (comproprietario != null
+                    && utente.getCodiceFiscaleUtente().equals(comproprietario.getCodiceFiscaleUtente())) {
+                logger.error("Il proprietario e il comproprietario non possono essere la stessa persona");
+                return null;
+            }
+        }
+
+        // Aggiorna la disponibilità del veicolo in base al tipo di movimento, con gli stessi UPDATE
+        // condizionati dell'inserimento; un'eccezione annulla l'intera transazione
+        TipoMovimento tipoMovimento = movimentoRequestDto.getTipoMovimento();
+        boolean stessoVeicolo = veicolo.getNumeroTelaio().equals(telaioPrecedente);
+        if (tipoMovimento == TipoMovimento.VENDITA) {
+            // Un movimento che diventa vendita, o che passa a un altro veicolo, rispetta le prenotazioni
+            // e la disponibilità come un inserimento
+            if (existingMovimento.getTipoMovimento() != TipoMovimento.VENDITA || !stessoVeicolo) {
+                prenotazioniService.verificaVendibile(veicolo.getNumeroTelaio(), operatore);
+                if (veicoloRepository.segnaVenduto(veicolo.getNumeroTelaio()) == 0) {
+                    logger.warn("Aggiornamento rifiutato: veicolo con numero telaio {} non disponibile", veicolo.getNumeroTelaio());
+                    throw new VeicoloNonDisponibileException(veicolo.getNumeroTelaio());
                 }
-                
-                existingMovimento.setComproprietario(comproprietario.get());
+                prenotazioniService.veicoloNonPiuDisponibile(veicolo.getNumeroTelaio());
+                logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a false (vendita)", veicolo.getNumeroTelaio());
+            }
+        } else if (tipoMovimento == TipoMovimento.ACQUISTO
+                && (existingMovimento.getTipoMovimento() != TipoMovimento.ACQUISTO || !stessoVeicolo)) {
+            veicoloRepository.segnaDisponibile(veicolo.getNumeroTelaio());
+            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a true (acquisto)", veicolo.getNumeroTelaio());
+        }
+        cacheVeicoli.invalidaDopoCommit(veicolo.getNumeroTelaio());
+
+        existingMovimento.setUtente(utente);
+        existingMovimento.setVeicolo(veicolo);
+        existingMovimento.setHasComproprietario(movimentoRequestDto.isHasComproprietario());
+        if (movimentoRequestDto.isHasComproprietario()) {
+            if (comproprietario != null) {
+                existingMovimento.setComproprietario(comproprietario);
             }
-            
             // Aggiorna il prezzo per proprietario (50% ciascuno)
-            double prezzoPerProprietario = movimentoRequestDto.getPrezzo() / 2;
-            existingMovimento.setPrezzoPerProprietario(prezzoPerProprietario);
+            existingMovimento.setPrezzoPerProprietario(movimentoRequestDto.getPrezzo() / 2);
         } else {
             // Rimuovi il comproprietario se non c'è più comproprietà
             existingMovimento.setComproprietario(null);
             existingMovimento.setPrezzoPerProprietario(null);
         }
-
         existingMovimento.setDataMovimento(movimentoRequestDto.getDataMovimento());
-        existingMovimento.setTipoMovimento(movimentoRequestDto.getTipoMovimento());
+        existingMovimento.setTipoMovimento(tipoMovimento);
         existingMovimento.setPrezzo(movimentoRequestDto.getPrezzo());
 
-        // Aggiorna la disponibilità del veicolo in base al tipo di movimento
-        Veicolo veicoloToUpdate = existingMovimento.getVeicolo();
-        if (existingMovimento.getTipoMovimento() == TipoMovimento.VENDITA) {
-            veicoloToUpdate.setDisponibile(false);
-            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a false (vendita)", veicoloToUpdate.getNumeroTelaio());
-        } else if (existingMovimento.getTipoMovimento() == TipoMovimento.ACQUISTO) {
-            veicoloToUpdate.setDisponibile(true);
-            logger.info("Disponibilità del veicolo con numero telaio {} aggiornata a true (acquisto)", veicoloToUpdate.getNumeroTelaio());
-        }
-        veicoloRepository.save(veicoloToUpdate);
-
-        movimentoRepository.save(existingMovimento);
+        movimentoRepository.saveAndFlush(existingMovimento);
+        contatoriModifiche.modificata(Tabella.MOVIMENTI, Tabella.VEICOLI);
         logger.info("Movimento con ID {} aggiornato correttamente", id);
 
         return movimentoMapper.toDto(existingMovimento);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package com.stage.concessionario.service;
+
+import java.util.Set;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.stage.concessionario.dto.PageResponseDto;
+
+/**
+ * Utilità comuni per gli elenchi paginati.
+ * La dimensione massima della pagina è imposta da spring.data.web.pageable.max-page-size.
+ */
+public final class PaginazioneHelper {
+
+    private PaginazioneHelper() {}
+
+    /**
+     * Accetta solo ordinamenti su colonne indicizzate e aggiunge la chiave primaria
+     * come ultimo criterio, così che l'ordine delle pagine sia stabile. La chiave primaria
+     * segue la direzione dell'ultimo criterio richiesto: con direzioni miste l'indice
+     * non potrebbe essere letto in ordine e servirebbe un ordinamento su file.
+     * @throws IllegalArgumentException se viene richiesto un ordinamento non consentito
+     */
+    public static Pageable conOrdinamentoConsentito(Pageable pageable, Set<String> proprietaConsentite, String chiavePrimaria) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!proprietaConsentite.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Ordinamento non consentito: " + order.getProperty());
+            }
+        }
+
+        Sort sort = pageable.getSort();
+        if (sort.getOrderFor(chiavePrimaria) == null) {
+            Sort.Direction direzione = Sort.Direction.ASC;
+            for (Sort.Order order : sort) {
+                direzione = order.getDirection();
+            }
+            sort = sort.and(Sort.by(direzione, chiavePrimaria));
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    }
+
+    public static <T> PageResponseDto<T> toDto(Page<T> page) {
+        return new PageResponseDto<>(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -0,0 +1,348 @@
+package com.stage.concessionario.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.stage.concessionario.dto.PrenotazioneResponseDto;
+import com.stage.concessionario.model.Prenotazione;
+import com.stage.concessionario.model.Veicolo;
+import com.stage.concessionario.repository.PrenotazioneRepository;
+import com.stage.concessionario.repository.VeicoloRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Prenotazioni temporanee dei veicoli durante una trattativa: finché la prenotazione è attiva
+ * solo il titolare può vendere il veicolo o rinnovarla.
+ * Il registro è in memoria; le operazioni sullo stesso telaio sono serializzate da lock a strisce,
+ * quindi telai diversi raramente si contendono lo stesso lock. Le scadenze sono gestite da una
+ * RuotaTemporale avanzata una volta per tick: la scadenza di una prenotazione costa O(1) e
+ * non richiede di scorrere quelle attive. Ogni modifica è copiata in modo asincrono nella tabella
+ * prenotazione, da cui il registro viene ricostruito all'avvio; dopo l'avvio il registro è l'unica
+ * fonte consultata da vendite e prenotazioni, senza letture della tabella.
+ * Le chiavi sono i telai come memorizzati nel database: con la collation case-insensitive di MySQL
+ * "abc " trova il veicolo "ABC", e una chiave diversa aggirerebbe la prenotazione.
+ */
+@Service
+public class PrenotazioniService implements InitializingBean {
+
+    private static final int NUMERO_STRISCE = 64;
+    private static final long TICK_MILLIS = 1000;
+    private static final int SECCHI_PER_LIVELLO = 64;
+
+    private final PrenotazioneRepository prenotazioneRepository;
+    private final VeicoloRepository veicoloRepository;
+    private final Duration durataPredefinita;
+    private final Duration durataMassima;
+    private final Object[] strisce = new Object[NUMERO_STRISCE];
+    private final Map<String, Blocco> attive = new ConcurrentHashMap<>();
+    // Accessi sincronizzati sulla ruota stessa; mai acquisito prima di un lock di striscia
+    private final RuotaTemporale<Blocco> ruota = new RuotaTemporale<>(TICK_MILLIS, SECCHI_PER_LIVELLO,
+            System.currentTimeMillis());
+    private final ScheduledExecutorService orologio;
+    // Un solo thread: le scritture sullo stesso telaio arrivano al database nell'ordine in cui sono avvenute
+    private final ExecutorService persistenza;
+    private static final Logger logger = LogManager.getLogger(PrenotazioniService.class);
+
+    private static final class Blocco {
+        private final String numeroTelaio;
+        private final String titolare;
+        private final String nota;
+        private final long creata;
+        private final long scadenza;
+        private RuotaTemporale.Voce<Blocco> voce;
+
+        private Blocco(String numeroTelaio, String titolare, String nota, long creata, long scadenza) {
+            this.numeroTelaio = numeroTelaio;
+            this.titolare = titolare;
+            this.nota = nota;
+            this.creata = creata;
+            this.scadenza = scadenza;
+        }
+
+        private boolean attivo(long adesso) {
+            return scadenza > adesso;
+        }
+    }
+
+    public PrenotazioniService(PrenotazioneRepository prenotazioneRepository, VeicoloRepository veicoloRepository,
+            MeterRegistry meterRegistry,
+            @Value("${prenotazioni.durata-predefinita:PT30M}") Duration durataPredefinita,
+            @Value("${prenotazioni.durata-massima:PT4H}") Duration durataMassima) {
+        for (int i = 0; i < NUMERO_STRISCE; i++) {
+            strisce[i] = new Object();
+        }
+        this.prenotazioneRepository = prenotazioneRepository;
+        this.veicoloRepository = veicoloRepository;
+        this.durataPredefinita = durataPredefinita;
+        this.durataMassima = durataMassima;
+        this.orologio = Executors.newSingleThreadScheduledExecutor(r -> thread(r, "prenotazioni-scadenze"));
+        this.persistenza = Executors.newSingleThreadExecutor(r -> thread(r, "prenotazioni-persistenza"));
+        this.orologio.scheduleAtFixedRate(this::scadi, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        meterRegistry.gaugeMapSize("prenotazioni.attive", Tags.empty(), attive);
+    }
+
+    private static Thread thread(Runnable r, String nome) {
+        Thread t = new Thread(r, nome);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // Eseguito durante l'avvio del contesto, prima che il server accetti richieste: nessuna vendita
+    // può passare mentre il registro è ancora vuoto
+    @Override
+    public void afterPropertiesSet() {
+        long adesso = System.currentTimeMillis();
+        int ripristinate = 0;
+        for (Prenotazione p : prenotazioneRepository.findAll()) {
+            if (p.getScadenza().getTime() <= adesso) {
+                elimina(p.getNumeroTelaio());
+                continue;
+            }
+            Blocco blocco = new Blocco(p.getNumeroTelaio(), p.getTitolare(), p.getNota(),
+                    p.getCreata().getTime(), p.getScadenza().getTime());
+            synchronized (striscia(p.getNumeroTelaio())) {
+                if (attive.putIfAbsent(p.getNumeroTelaio(), blocco) == null) {
+                    pianifica(blocco);
+                    ripristinate++;
+                }
+            }
+        }
+        logger.info("Registro delle prenotazioni ricostruito: {} prenotazioni attive", ripristinate);
+    }
+
+    /**
+     * Prenota il veicolo per il titolare, o rinnova la sua prenotazione.
+     * Restituisce null se il veicolo non esiste; lancia VeicoloNonDisponibileException se è venduto
+     * o prenotato da un altro titolare, IllegalArgumentException se la durata non è consentita.
+     */
+    public PrenotazioneResponseDto prenota(String numeroTelaio, String titolare, Integer minuti, String nota) {
+        Duration durata = minuti == null ? durataPredefinita : Duration.ofMinutes(minuti);
+        if (durata.isNegative() || durata.isZero() || durata.compareTo(durataMassima) > 0) {
+            throw new IllegalArgumentException("Durata della prenotazione non consentita (massimo "
+                    + durataMassima.toMinutes() + " minuti)");
+        }
+
+        Optional<String> memorizzato = veicoloRepository.findNumeroTelaioMemorizzato(numeroTelaio);
+        if (!memorizzato.isPresent()) {
+            logger.error("Veicolo con numero telaio {} non esistente", numeroTelaio);
+            return null;
+        }
+        String telaio = memorizzato.get();
+        Optional<Veicolo> veicolo = veicoloRepository.findByNumeroTelaio(telaio);
+        if (!veicolo.isPresent() || !veicolo.get().isDisponibile()) {
+            logger.warn("Prenotazione rifiutata: veicolo con numero telaio {} non disponibile", telaio);
+            throw new VeicoloNonDisponibileException(telaio);
+        }
+
+        Blocco nuovo;
+        synchronized (striscia(telaio)) {
+            long adesso = System.currentTimeMillis();
+            Blocco attuale = attivo(telaio, adesso);
+            if (attuale != null && !attuale.titolare.equals(titolare)) {
+                logger.warn("Prenotazione rifiutata: veicolo con numero telaio {} già prenotato da {}",
+                        telaio, attuale.titolare);
+                throw new VeicoloNonDisponibileException(telaio, "Veicolo con numero telaio " + telaio
+                        + " prenotato fino a " + new Date(attuale.scadenza));
+            }
+            nuovo = new Blocco(telaio, titolare, nota, adesso, adesso + durata.toMillis());
+            Blocco precedente = attive.put(telaio, nuovo);
+            if (precedente != null) {
+                annulla(precedente);
+            }
+            pianifica(nuovo);
+            salva(nuovo);
+        }
+        logger.info("Veicolo con numero telaio {} prenotato da {} fino a {}",
+                telaio, titolare, new Date(nuovo.scadenza));
+        return toDto(nuovo);
+    }
+
+    public PrenotazioneResponseDto getPrenotazione(String numeroTelaio) {
+        Optional<String> telaio = veicoloRepository.findNumeroTelaioMemorizzato(numeroTelaio);
+        if (!telaio.isPresent()) {
+            return null;
+        }
+        Blocco blocco = attivo(telaio.get(), System.currentTimeMillis());
+        return blocco != null ? toDto(blocco) : null;
+    }
+
+    /**
+     * Rilascia la prenotazione del titolare. Restituisce false se non c'è una prenotazione attiva;
+     * lancia VeicoloNonDisponibileException se appartiene a un altro titolare.
+     */
+    public boolean rilascia(String numeroTelaio, String titolare) {
+        Optional<String> memorizzato = veicoloRepository.findNumeroTelaioMemorizzato(numeroTelaio);
+        if (!memorizzato.isPresent()) {
+            return false;
+        }
+        String telaio = memorizzato.get();
+        synchronized (striscia(telaio)) {
+            Blocco attuale = attivo(telaio, System.currentTimeMillis());
+            if (attuale == null) {
+                return false;
+            }
+            if (!attuale.titolare.equals(titolare)) {
+                throw new VeicoloNonDisponibileException(telaio,
+                        "Veicolo con numero telaio " + telaio + " prenotato da un altro operatore");
+            }
+            rimuovi(attuale);
+        }
+        logger.info("Prenotazione del veicolo con numero telaio {} rilasciata da {}", telaio, titolare);
+        return true;
+    }
+
+    /**
+     * Verifica che l'operatore possa vendere il veicolo: lancia VeicoloNonDisponibileException
+     * se è prenotato da un altro titolare. Il telaio deve essere quello letto dal database
+     * (getNumeroTelaio di un veicolo caricato con una query). Legge il registro senza lock.
+     */
+    public void verificaVendibile(String numeroTelaio, String operatore) {
+        Blocco attuale = attivo(numeroTelaio, System.currentTimeMillis());
+        if (attuale != null && !attuale.titolare.equals(operatore)) {
+            logger.warn("Vendita rifiutata: veicolo con numero telaio {} prenotato da {}", numeroTelaio, attuale.titolare);
+            throw new VeicoloNonDisponibileException(numeroTelaio, "Veicolo con numero telaio " + numeroTelaio
+                    + " prenotato fino a " + new Date(attuale.scadenza));
+        }
+    }
+
+    // Il veicolo è stato venduto o eliminato: la sua prenotazione non serve più (dopo il commit, se in transazione)
+    public void veicoloNonPiuDisponibile(String numeroTelaio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rimuoviSePresente(numeroTelaio);
+                }
+            });
+        } else {
+            rimuoviSePresente(numeroTelaio);
+        }
+    }
+
+    private void rimuoviSePresente(String numeroTelaio) {
+        synchronized (striscia(numeroTelaio)) {
+            Blocco attuale = attive.get(numeroTelaio);
+            if (attuale != null) {
+                rimuovi(attuale);
+            }
+        }
+    }
+
+    // Eseguito dal thread dell'orologio una volta per tick
+    private void scadi() {
+        try {
+            List<Blocco> scaduti;
+            synchronized (ruota) {
+                scaduti = ruota.avanza(System.currentTimeMillis());
+            }
+            for (Blocco blocco : scaduti) {
+                synchronized (striscia(blocco.numeroTelaio)) {
+                    // Solo se nel frattempo non è stata sostituita da un rinnovo
+                    if (attive.remove(blocco.numeroTelaio, blocco)) {
+                        elimina(blocco.numeroTelaio);
+                        logger.info("Prenotazione del veicolo con numero telaio {} scaduta", blocco.numeroTelaio);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Un'eccezione non gestita fermerebbe l'esecuzione periodica
+            logger.error("Errore durante la scadenza delle prenotazioni", e);
+        }
+    }
+
+    private Blocco attivo(String numeroTelaio, long adesso) {
+        Blocco blocco = attive.get(numeroTelaio);
+        return blocco != null && blocco.attivo(adesso) ? blocco : null;
+    }
+
+    // I metodi seguenti sono chiamati con il lock di striscia del telaio acquisito
+
+    private void rimuovi(Blocco blocco) {
+        attive.remove(blocco.numeroTelaio, blocco);
+        annulla(blocco);
+        elimina(blocco.numeroTelaio);
+    }
+
+    private void pianifica(Blocco blocco) {
+        synchronized (ruota) {
+            blocco.voce = ruota.aggiungi(blocco, blocco.scadenza);
+        }
+    }
+
+    // Un blocco letto dalla tabella non è pianificato sulla ruota: annulla lo ignora
+    private void annulla(Blocco blocco) {
+        synchronized (ruota) {
+            ruota.annulla(blocco.voce);
+        }
+    }
+
+    private void salva(Blocco blocco) {
+        Prenotazione p = new Prenotazione();
+        p.setNumeroTelaio(blocco.numeroTelaio);
+        p.setTitolare(blocco.titolare);
+        p.setNota(blocco.nota);
+        p.setCreata(new Date(blocco.creata));
+        p.setScadenza(new Date(blocco.scadenza));
+        persistenza.execute(() -> {
+            try {
+                prenotazioneRepository.save(p);
+            } catch (DataAccessException e) {
+                logger.error("Salvataggio della prenotazione del veicolo {} non riuscito", p.getNumeroTelaio(), e);
+            }
+        });
+    }
+
+    private void elimina(String numeroTelaio) {
+        persistenza.execute(() -> {
+            try {
+                prenotazioneRepository.deleteById(numeroTelaio);
+            } catch (DataAccessException e) {
+                logger.error("Eliminazione della prenotazione del veicolo {} non riuscita", numeroTelaio, e);
+            }
+        });
+    }
+
+    private Object striscia(String numeroTelaio) {
+        return strisce[Math.floorMod(numeroTelaio.hashCode(), NUMERO_STRISCE)];
+    }
+
+    private static PrenotazioneResponseDto toDto(Blocco blocco) {
+        PrenotazioneResponseDto dto = new PrenotazioneResponseDto();
+        dto.setNumeroTelaio(blocco.numeroTelaio);
+        dto.setTitolare(blocco.titolare);
+        dto.setNota(blocco.nota);
+        dto.setCreata(new Date(blocco.creata));
+        dto.setScadenza(new Date(blocco.scadenza));
+        return dto;
+    }
+
+    // Le scritture già accodate vengono completate prima della chiusura del contesto
+    @PreDestroy
+    public void chiudi() throws InterruptedException {
+        orologio.shutdownNow();
+        persistenza.shutdown();
+        if (!persistenza.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Alcune prenotazioni non sono state salvate prima dell'arresto");
+        }
+    }
+}
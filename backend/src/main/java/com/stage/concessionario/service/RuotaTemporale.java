@@ -0,0 +1,190 @@
+package com.stage.concessionario.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ruota temporale gerarchica per scadenze in memoria.
+ * Ogni livello ha lo stesso numero di secchi; un secchio del livello n copre tick * secchi^n
+ * millisecondi e i livelli superiori sono creati solo quando servono. Inserimento e annullamento
+ * sono O(1) (liste doppiamente collegate); l'avanzamento visita un solo secchio per livello e tick,
+ * e le voci dei livelli superiori scendono verso il livello 0 man mano che la scadenza si avvicina,
+ * senza mai scorrere tutte le voci registrate.
+ * Non è thread-safe: chi la usa deve sincronizzare gli accessi.
+ */
+public final class RuotaTemporale<T> {
+
+    public static final class Voce<T> {
+        private final T valore;
+        private final long scadenza;
+        private Secchio<T> secchio;
+        private Voce<T> precedente;
+        private Voce<T> successiva;
+
+        private Voce(T valore, long scadenza) {
+            this.valore = valore;
+            this.scadenza = scadenza;
+        }
+
+        public T getValore() {
+            return valore;
+        }
+
+        public long getScadenza() {
+            return scadenza;
+        }
+    }
+
+    private static final class Secchio<T> {
+        private final Voce<T> sentinella = new Voce<>(null, 0);
+        // Inizio dell'intervallo coperto dal secchio, -1 se vuoto
+        private long scadenza = -1;
+
+        private Secchio() {
+            sentinella.precedente = sentinella;
+            sentinella.successiva = sentinella;
+        }
+
+        private void aggiungi(Voce<T> voce) {
+            voce.secchio = this;
+            voce.precedente = sentinella.precedente;
+            voce.successiva = sentinella;
+            sentinella.precedente.successiva = voce;
+            sentinella.precedente = voce;
+        }
+
+        private void rimuovi(Voce<T> voce) {
+            voce.precedente.successiva = voce.successiva;
+            voce.successiva.precedente = voce.precedente;
+            voce.precedente = null;
+            voce.successiva = null;
+            voce.secchio = null;
+        }
+
+        private void svuota(List<Voce<T>> destinazione) {
+            Voce<T> voce = sentinella.successiva;
+            while (voce != sentinella) {
+                Voce<T> successiva = voce.successiva;
+                rimuovi(voce);
+                destinazione.add(voce);
+                voce = successiva;
+            }
+            scadenza = -1;
+        }
+    }
+
+    private static final class Livello<T> {
+        private final long tick;
+        private final int numeroSecchi;
+        private final long intervallo;
+        private final Secchio<T>[] secchi;
+        private long tempoCorrente;
+        private Livello<T> superiore;
+
+        @SuppressWarnings("unchecked")
+        private Livello(long tick, int numeroSecchi, long inizio) {
+            this.tick = tick;
+            this.numeroSecchi = numeroSecchi;
+            this.intervallo = tick * numeroSecchi;
+            this.secchi = new Secchio[numeroSecchi];
+            for (int i = 0; i < numeroSecchi; i++) {
+                secchi[i] = new Secchio<>();
+            }
+            this.tempoCorrente = inizio - inizio % tick;
+        }
+
+        // false se la voce scade nel tick corrente e non può più essere collocata
+        private boolean aggiungi(Voce<T> voce) {
+            if (voce.scadenza < tempoCorrente + tick) {
+                return false;
+            }
+            if (voce.scadenza < tempoCorrente + intervallo) {
+                long idVirtuale = voce.scadenza / tick;
+                Secchio<T> secchio = secchi[(int) (idVirtuale % numeroSecchi)];
+                secchio.aggiungi(voce);
+                secchio.scadenza = idVirtuale * tick;
+                return true;
+            }
+            if (superiore == null) {
+                superiore = new Livello<>(intervallo, numeroSecchi, tempoCorrente);
+            }
+            return superiore.aggiungi(voce);
+        }
+
+        // Svuota i secchi il cui intervallo è iniziato entro "ora"; se l'orologio è rimasto
+        // indietro di più di un giro ogni secchio viene visitato una sola volta
+        private void avanza(long ora, List<Voce<T>> daRicollocare) {
+            if (ora < tempoCorrente + tick) {
+                return;
+            }
+            long primo = tempoCorrente / tick + 1;
+            long ultimo = ora / tick;
+            for (long id = Math.max(primo, ultimo - numeroSecchi + 1); id <= ultimo; id++) {
+                Secchio<T> secchio = secchi[(int) (id % numeroSecchi)];
+                if (secchio.scadenza >= 0 && secchio.scadenza <= ora) {
+                    secchio.svuota(daRicollocare);
+                }
+            }
+            tempoCorrente = ultimo * tick;
+            if (superiore != null) {
+                superiore.avanza(ora, daRicollocare);
+            }
+        }
+    }
+
+    private final Livello<T> radice;
+    // Voci che scadono entro il tick corrente: sono restituite al primo avanzamento successivo alla scadenza
+    private final Secchio<T> imminenti = new Secchio<>();
+    private int voci;
+
+    public RuotaTemporale(long tickMillis, int secchiPerLivello, long adesso) {
+        if (tickMillis <= 0 || secchiPerLivello < 2) {
+            throw new IllegalArgumentException("Parametri della ruota temporale non validi");
+        }
+        this.radice = new Livello<>(tickMillis, secchiPerLivello, adesso);
+    }
+
+    public Voce<T> aggiungi(T valore, long scadenza) {
+        Voce<T> voce = new Voce<>(valore, scadenza);
+        if (!radice.aggiungi(voce)) {
+            imminenti.aggiungi(voce);
+        }
+        voci++;
+        return voce;
+    }
+
+    // false se la voce era già scaduta o annullata
+    public boolean annulla(Voce<T> voce) {
+        if (voce == null || voce.secchio == null) {
+            return false;
+        }
+        voce.secchio.rimuovi(voce);
+        voci--;
+        return true;
+    }
+
+    /**
+     * Porta l'orologio a "ora" e restituisce i valori scaduti (scadenza minore o uguale a ora),
+     * che non fanno più parte della ruota.
+     */
+    public List<T> avanza(long ora) {
+        List<Voce<T>> daRicollocare = new ArrayList<>();
+        imminenti.svuota(daRicollocare);
+        radice.avanza(ora, daRicollocare);
+
+        List<T> scaduti = new ArrayList<>();
+        for (Voce<T> voce : daRicollocare) {
+            if (voce.scadenza <= ora) {
+                scaduti.add(voce.valore);
+                voci--;
+            } else if (!radice.aggiungi(voce)) {
+                imminenti.aggiungi(voce);
+            }
+        }
+        return scaduti;
+    }
+
+    public int getVoci() {
+        return voci;
+    }
+}
@@ -0,0 +1,82 @@
+package com.stage.concessionario.service;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.stage.concessionario.dto.SuggerimentoDto;
+import com.stage.concessionario.repository.VeicoloRepository;
+
+/**
+ * Autocompletamento di marca e modello servito interamente dalla memoria.
+ * I trie sono popolati all'avvio con un conteggio raggruppato e poi aggiornati
+ * da VeicoloService a ogni inserimento, modifica o eliminazione, dopo il commit.
+ */
+@Service
+public class SuggerimentiVeicoliService {
+
+    public static final int MAX_SUGGERIMENTI = 20;
+
+    private final VeicoloRepository veicoloRepository;
+    private final TriePrefissi marche = new TriePrefissi(MAX_SUGGERIMENTI);
+    private final TriePrefissi modelli = new TriePrefissi(MAX_SUGGERIMENTI);
+    private static final Logger logger = LogManager.getLogger(SuggerimentiVeicoliService.class);
+
+    public SuggerimentiVeicoliService(VeicoloRepository veicoloRepository) {
+        this.veicoloRepository = veicoloRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void costruisciTrie() {
+        for (Object[] riga : veicoloRepository.countByMarca()) {
+            marche.incrementa((String) riga[0], (Long) riga[1]);
+        }
+        for (Object[] riga : veicoloRepository.countByModello()) {
+            modelli.incrementa((String) riga[0], (Long) riga[1]);
+        }
+        logger.info("Trie per l'autocompletamento di marca e modello costruiti");
+    }
+
+    // I conteggi cambiano dopo il commit della transazione del chiamante (subito, fuori da una transazione):
+    // una scrittura annullata non sposta i suggerimenti
+    public void veicoloAggiunto(String marca, String modello) {
+        dopoCommit(() -> {
+            marche.incrementa(marca);
+            modelli.incrementa(modello);
+        });
+    }
+
+    public void veicoloRimosso(String marca, String modello) {
+        dopoCommit(() -> {
+            marche.decrementa(marca);
+            modelli.decrementa(modello);
+        });
+    }
+
+    private static void dopoCommit(Runnable modifica) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    modifica.run();
+                }
+            });
+        } else {
+            modifica.run();
+        }
+    }
+
+    public List<SuggerimentoDto> suggerisciMarche(String prefisso, int limite) {
+        return marche.suggerisci(prefisso, Math.min(limite, MAX_SUGGERIMENTI));
+    }
+
+    public List<SuggerimentoDto> suggerisciModelli(String prefisso, int limite) {
+        return modelli.suggerisci(prefisso, Math.min(limite, MAX_SUGGERIMENTI));
+    }
+}
@@ -0,0 +1,155 @@
+package com.stage.concessionario.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.stage.concessionario.dto.SuggerimentoDto;
+
+/**
+ * Trie dei prefissi con codifica a dizionario: ogni valore distinto è memorizzato una sola volta
+ * nel dizionario e i nodi terminali ne contengono solo l'indice. Per ogni valore si tiene il
+ * numero di occorrenze, usato per ordinare i completamenti.
+ * Ogni nodo conserva i primi k valori del proprio sottoalbero, ricalcolati lungo il percorso a ogni
+ * modifica: un suggerimento costa la discesa sul prefisso e non la visita del sottoalbero.
+ * Il confronto è case-insensitive; viene restituita la grafia con cui il valore è stato visto per primo.
+ */
+public class TriePrefissi {
+
+    private static final int[] NESSUNO = new int[0];
+
+    private static final class Nodo {
+        private final Map<Character, Nodo> figli = new HashMap<>(4);
+        private int idValore = -1;
+        // Indici del dizionario con più occorrenze nel sottoalbero, in ordine decrescente
+        private int[] migliori = NESSUNO;
+    }
+
+    private final int maxMigliori;
+    private final Nodo radice = new Nodo();
+    private final List<String> dizionario = new ArrayList<>();
+    private final List<Integer> occorrenze = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TriePrefissi(int maxMigliori) {
+        this.maxMigliori = maxMigliori;
+    }
+
+    public void incrementa(String valore, long quantita) {
+        if (valore == null || valore.isBlank() || quantita <= 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            List<Nodo> percorso = new ArrayList<>();
+            Nodo nodo = radice;
+            percorso.add(nodo);
+            for (char c : normalizza(valore).toCharArray()) {
+                nodo = nodo.figli.computeIfAbsent(c, k -> new Nodo());
+                percorso.add(nodo);
+            }
+            if (nodo.idValore < 0) {
+                nodo.idValore = dizionario.size();
+                dizionario.add(valore.trim());
+                occorrenze.add(0);
+            }
+            occorrenze.set(nodo.idValore, (int) (occorrenze.get(nodo.idValore) + quantita));
+            aggiornaMigliori(percorso);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void incrementa(String valore) {
+        incrementa(valore, 1);
+    }
+
+    // I valori che scendono a zero occorrenze restano nel dizionario ma non vengono più suggeriti
+    public void decrementa(String valore) {
+        if (valore == null || valore.isBlank()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            List<Nodo> percorso = new ArrayList<>();
+            Nodo nodo = radice;
+            percorso.add(nodo);
+            for (char c : normalizza(valore).toCharArray()) {
+                nodo = nodo.figli.get(c);
+                if (nodo == null) {
+                    return;
+                }
+                percorso.add(nodo);
+            }
+            if (nodo.idValore >= 0 && occorrenze.get(nodo.idValore) > 0) {
+                occorrenze.set(nodo.idValore, occorrenze.get(nodo.idValore) - 1);
+                aggiornaMigliori(percorso);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Restituisce i k completamenti del prefisso con più occorrenze (al massimo quelli conservati nel nodo).
+     */
+    public List<SuggerimentoDto> suggerisci(String prefisso, int k) {
+        lock.readLock().lock();
+        try {
+            Nodo partenza = trova(normalizza(prefisso == null ? "" : prefisso));
+            if (partenza == null || k <= 0) {
+                return List.of();
+            }
+            int quanti = Math.min(k, partenza.migliori.length);
+            List<SuggerimentoDto> risultato = new ArrayList<>(quanti);
+            for (int i = 0; i < quanti; i++) {
+                int id = partenza.migliori[i];
+                risultato.add(new SuggerimentoDto(dizionario.get(id), occorrenze.get(id)));
+            }
+            return risultato;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Dal nodo terminale alla radice: i migliori di un nodo sono il suo valore più i migliori
+    // dei figli, che sono già aggiornati. Il costo dipende da lunghezza del valore, figli e k.
+    private void aggiornaMigliori(List<Nodo> percorso) {
+        Comparator<Integer> perOccorrenze = Comparator.<Integer>comparingInt(occorrenze::get).reversed()
+                .thenComparingInt(id -> id);
+        for (int i = percorso.size() - 1; i >= 0; i--) {
+            Nodo nodo = percorso.get(i);
+            List<Integer> candidati = new ArrayList<>();
+            if (nodo.idValore >= 0 && occorrenze.get(nodo.idValore) > 0) {
+                candidati.add(nodo.idValore);
+            }
+            for (Nodo figlio : nodo.figli.values()) {
+                for (int id : figlio.migliori) {
+                    candidati.add(id);
+                }
+            }
+            candidati.sort(perOccorrenze);
+            nodo.migliori = candidati.stream().limit(maxMigliori).mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private Nodo trova(String chiave) {
+        Nodo nodo = radice;
+        for (char c : chiave.toCharArray()) {
+            nodo = nodo.figli.get(c);
+            if (nodo == null) {
+                return null;
+            }
+        }
+        return nodo;
+    }
+
+    private static String normalizza(String valore) {
+        return valore.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,35 +2,55 @@ package com.stage.concessionario.service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.stage.concessionario.dto.PageResponseDto;
 import com.stage.concessionario.dto.UtenteRequestDto;
 import com.stage.concessionario.dto.UtenteResponseDto;
 import com.stage.concessionario.dto.UtenteUpdateDto;
 import com.stage.concessionario.mapper.UtenteMapper;
 import com.stage.concessionario.model.Utente;
 import com.stage.concessionario.repository.UtenteRepository;
+import com.stage.concessionario.repository.UtenteSpecifications;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
 
 @Service
 public class UtenteService {
 
     private final UtenteRepository utenteRepository;
     private final UtenteMapper utenteMapper;
+    private final IndiceTrigrammiService indiceTrigrammiService;
+    private final ContatoriModificheService contatoriModifiche;
     private static final Logger logger = LogManager.getLogger(UtenteService.class);
 
-    public UtenteService(UtenteRepository utenteRepository, UtenteMapper utenteMapper) {
+    // Solo colonne indicizzate, per evitare ordinamenti su file
+    private static final Set<String> ORDINAMENTI_CONSENTITI = Set.of("codiceFiscaleUtente", "cognome");
+    private static final int MAX_RISULTATI_RICERCA = 100;
+
+    public UtenteService(UtenteRepository utenteRepository, UtenteMapper utenteMapper,
+            IndiceTrigrammiService indiceTrigrammiService, ContatoriModificheService contatoriModifiche) {
         this.utenteRepository = utenteRepository;
         this.utenteMapper = utenteMapper;
+        this.indiceTrigrammiService = indiceTrigrammiService;
+        this.contatoriModifiche = contatoriModifiche;
     }
 
-    public List<UtenteResponseDto> getUtenti() {
-        List<Utente> utenti = utenteRepository.findAll();
-        logger.info("Lista utenti visualizzata correttamente");
-        return utenti.stream().map(utenteMapper::toDto).collect(Collectors.toList());
+    public PageResponseDto<UtenteResponseDto> getUtenti(Pageable pageable) {
+        Pageable paginazione = PaginazioneHelper.conOrdinamentoConsentito(pageable, ORDINAMENTI_CONSENTITI, "codiceFiscaleUtente");
+        Page<Utente> utenti = utenteRepository.findAll(paginazione);
+        logger.info("Lista utenti visualizzata correttamente (pagina {})", paginazione.getPageNumber());
+        return PaginazioneHelper.toDto(utenti.map(utenteMapper::toDto));
     }
 
     public UtenteResponseDto getUtenteByCodiceFiscale(String codiceFiscale) {
@@ -45,22 +65,21 @@ public class UtenteService {
     }
 
     public List<UtenteResponseDto> searchUtenti(String nome, String cognome, String email) {
-        List<Utente> risultati = utenteRepository.findAll();
+        // Tutti i criteri valorizzati sono combinati in AND in un'unica query
+        Specification<Utente> spec = Specification.where(UtenteSpecifications.nomeIniziaCon(nome))
+                .and(UtenteSpecifications.cognomeIniziaCon(cognome))
+                .and(UtenteSpecifications.emailIniziaCon(email));
 
-        if (nome != null && !nome.isEmpty()) {
-            risultati = utenteRepository.findByNomeContainingIgnoreCase(nome);
-        }
-        if (cognome != null && !cognome.isEmpty()) {
-            risultati = utenteRepository.findByCognomeContainingIgnoreCase(cognome);
-        }
-        if (email != null && !email.isEmpty()) {
-            risultati = utenteRepository.findByEmailContainingIgnoreCase(email);
-        }
+        List<Utente> risultati = utenteRepository.findBy(spec, q -> q
+                .sortBy(Sort.by("cognomeNorm", "codiceFiscaleUtente"))
+                .limit(MAX_RISULTATI_RICERCA)
+                .all());
 
         logger.info("Ricerca utenti completata con {} risultati", risultati.size());
         return risultati.stream().map(utenteMapper::toDto).collect(Collectors.toList());
     }
 
+    @Transactional
     public UtenteResponseDto insert(UtenteRequestDto utenteRequestDto) {
         logger.debug("Tentativo di inserimento utente: {}", utenteRequestDto);
 
@@ -93,7 +112,9 @@ public class UtenteService {
                 utente.getIndirizzo()
             );
             
-            Utente savedUtente = utenteRepository.save(utente);
+            Utente savedUtente = utenteRepository.saveAndFlush(utente);
+            contatoriModifiche.modificata(Tabella.UTENTI);
+            indiceTrigrammiService.aggiungiCodiceFiscale(savedUtente.getCodiceFiscaleUtente());
             logger.info("Utente con codice fiscale {} inserito correttamente", savedUtente.getCodiceFiscaleUtente());
             
             return utenteMapper.toDto(savedUtente);
@@ -103,6 +124,7 @@ public class UtenteService {
         }
     }
 
+    @Transactional
     public UtenteResponseDto update(UtenteUpdateDto utenteUpdateDto, String codiceFiscale) {
         Optional<Utente> existingUtenteOpt = utenteRepository.findByCodiceFiscaleUtente(codiceFiscale);
         
@@ -112,9 +134,15 @@ public class UtenteService {
         }
 
         Utente existingUtente = existingUtenteOpt.get();
+        if (utenteUpdateDto.getVersione() != null && utenteUpdateDto.getVersione() != existingUtente.getVersione()) {
+            logger.warn("Utente con codice fiscale {} modificato da un'altra richiesta (versione {}, attesa {})",
+                    codiceFiscale, existingUtente.getVersione(), utenteUpdateDto.getVersione());
+            throw new ObjectOptimisticLockingFailureException(Utente.class, codiceFiscale);
+        }
         utenteMapper.updateUtenteFromDtoRequest(utenteUpdateDto, existingUtente);
 
         utenteRepository.save(existingUtente);
+        contatoriModifiche.modificata(Tabella.UTENTI);
 
         logger.info("Utente con codice fiscale {} aggiornato correttamente", codiceFiscale);
 
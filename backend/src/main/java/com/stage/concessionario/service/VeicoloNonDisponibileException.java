@@ -0,0 +1,25 @@
+package com.stage.concessionario.service;
+
+/**
+ * Il veicolo esiste ma non è disponibile per la vendita: già venduto (anche da una richiesta
+ * concorrente) oppure prenotato da un altro operatore.
+ * I controller la traducono in 409 Conflict.
+ */
+public class VeicoloNonDisponibileException extends RuntimeException {
+
+    private final String numeroTelaio;
+
+    public VeicoloNonDisponibileException(String numeroTelaio) {
+        super("Veicolo con numero telaio " + numeroTelaio + " non disponibile");
+        this.numeroTelaio = numeroTelaio;
+    }
+
+    public VeicoloNonDisponibileException(String numeroTelaio, String messaggio) {
+        super(messaggio);
+        this.numeroTelaio = numeroTelaio;
+    }
+
+    public String getNumeroTelaio() {
+        return numeroTelaio;
+    }
+}
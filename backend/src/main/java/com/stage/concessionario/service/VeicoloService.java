@@ -2,12 +2,21 @@ package com.stage.concessionario.service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.stage.concessionario.dto.FacetVeicoliDto;
+import com.stage.concessionario.dto.PageResponseDto;
 import com.stage.concessionario.dto.VeicoloRequestDto;
 import com.stage.concessionario.dto.VeicoloResponseDto;
 import com.stage.concessionario.dto.VeicoloUpdateDto;
@@ -16,6 +25,11 @@ import com.stage.concessionario.model.Configurazione;
 import com.stage.concessionario.model.Veicolo;
 import com.stage.concessionario.repository.ConfigurazioneRepository;
 import com.stage.concessionario.repository.VeicoloRepository;
+import com.stage.concessionario.repository.VeicoloSpecifications;
+import com.stage.concessionario.service.ContatoriModificheService.Tabella;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
 
 @Service
 public class VeicoloService {
@@ -23,18 +37,41 @@ public class VeicoloService {
     private final VeicoloRepository veicoloRepository;
     private final ConfigurazioneRepository configurazioneRepository;
     private final VeicoloMapper veicoloMapper;
+    private final IndiceTrigrammiService indiceTrigrammiService;
+    private final SuggerimentiVeicoliService suggerimentiVeicoliService;
+    private final CacheConfigurazioniService cacheConfigurazioni;
+    private final CacheVeicoliService cacheVeicoli;
+    private final PrenotazioniService prenotazioniService;
+    private final ContatoriModificheService contatoriModifiche;
+    private final EntityManager entityManager;
     private static final Logger logger = LogManager.getLogger(VeicoloService.class);
 
-    public VeicoloService(VeicoloRepository veicoloRepository, ConfigurazioneRepository configurazioneRepository, VeicoloMapper veicoloMapper) {
+    // Solo colonne indicizzate, per evitare ordinamenti su file
+    private static final Set<String> ORDINAMENTI_CONSENTITI = Set.of("numeroTelaio", "marca", "modello");
+    private static final int MAX_RISULTATI_RICERCA = 100;
+
+    public VeicoloService(VeicoloRepository veicoloRepository, ConfigurazioneRepository configurazioneRepository, VeicoloMapper veicoloMapper,
+            IndiceTrigrammiService indiceTrigrammiService, SuggerimentiVeicoliService suggerimentiVeicoliService,
+            CacheConfigurazioniService cacheConfigurazioni, CacheVeicoliService cacheVeicoli,
+            PrenotazioniService prenotazioniService, ContatoriModificheService contatoriModifiche,
+            EntityManager entityManager) {
         this.veicoloRepository = veicoloRepository;
         this.configurazioneRepository = configurazioneRepository;
         this.veicoloMapper = veicoloMapper;
+        this.indiceTrigrammiService = indiceTrigrammiService;
+        this.suggerimentiVeicoliService = suggerimentiVeicoliService;
+        this.cacheConfigurazioni = cacheConfigurazioni;
+        this.cacheVeicoli = cacheVeicoli;
+        this.prenotazioniService = prenotazioniService;
+        this.contatoriModifiche = contatoriModifiche;
+        this.entityManager = entityManager;
     }
 
-    public List<VeicoloResponseDto> getVeicoli() {
-        List<Veicolo> veicoli = veicoloRepository.findAll();
-        logger.info("Lista veicoli visualizzata correttamente");
-        return veicoli.stream().map(veicoloMapper::toDto).collect(Collectors.toList());
+    public PageResponseDto<VeicoloResponseDto> getVeicoli(Pageable pageable) {
+        Pageable paginazione = PaginazioneHelper.conOrdinamentoConsentito(pageable, ORDINAMENTI_CONSENTITI, "numeroTelaio");
+        Page<Veicolo> veicoli = veicoloRepository.findAll(paginazione);
+        logger.info("Lista veicoli visualizzata correttamente (pagina {})", paginazione.getPageNumber());
+        return PaginazioneHelper.toDto(veicoli.map(veicoloMapper::toDto));
     }
     
     public List<VeicoloResponseDto> getVeicoliDisponibili() {
@@ -44,54 +81,90 @@ public class VeicoloService {
     }
 
     public VeicoloResponseDto getVeicoloByNumeroTelaio(String numeroTelaio) {
-        Optional<Veicolo> veicolo = veicoloRepository.findByNumeroTelaio(numeroTelaio);
+        Optional<VeicoloResponseDto> veicolo = cacheVeicoli.perTelaio(numeroTelaio,
+                telaio -> veicoloRepository.findByNumeroTelaio(telaio).map(veicoloMapper::toDto).orElse(null));
         if (veicolo.isPresent()) {
             logger.info("Veicolo con numero telaio {} trovato correttamente", numeroTelaio);
-            return veicoloMapper.toDto(veicolo.get());
+            return veicolo.get();
         } else {
             logger.error("Veicolo con numero telaio {} non esistente", numeroTelaio);
             return null;
         }
     }
 
-    public List<VeicoloResponseDto> searchVeicoli(String numeroTelaio, String marca, String modello) {
-        List<Veicolo> veicoli;
-        
-        if (numeroTelaio != null && !numeroTelaio.isEmpty()) {
-            veicoli = veicoloRepository.findByNumeroTelaioContaining(numeroTelaio);
-            logger.info("Ricerca veicoli per numero telaio {}", numeroTelaio);
-            
-            // Filtriamo ulteriormente per marca e modello se specificati
-            if (marca != null && !marca.isEmpty()) {
-                veicoli = veicoli.stream()
-                    .filter(v -> v.getMarca().toLowerCase().contains(marca.toLowerCase()))
-                    .collect(Collectors.toList());
-                logger.info("Filtro applicato per marca {}", marca);
-            }
-            
-            if (modello != null && !modello.isEmpty()) {
-                veicoli = veicoli.stream()
-                    .filter(v -> v.getModello().toLowerCase().contains(modello.toLowerCase()))
-                    .collect(Collectors.toList());
-                logger.info("Filtro applicato per modello {}", modello);
-            }
-        } else if (marca != null && !marca.isEmpty() && modello != null && !modello.isEmpty()) {
-            veicoli = veicoloRepository.findByMarcaAndModello(marca, modello);
-            logger.info("Ricerca veicoli per marca {} e modello {}", marca, modello);
-        } else if (marca != null && !marca.isEmpty()) {
-            veicoli = veicoloRepository.findByMarca(marca);
-            logger.info("Ricerca veicoli per marca {}", marca);
-        } else if (modello != null && !modello.isEmpty()) {
-            veicoli = veicoloRepository.findByModello(modello);
-            logger.info("Ricerca veicoli per modello {}", modello);
-        } else {
-            veicoli = veicoloRepository.findAll();
-            logger.info("Nessun criterio di ricerca specificato, restituiti tutti i veicoli");
+    /**
+     * Stato corrente letto dal database, per il corpo delle risposte 409: la cache del DTO e la
+     * cache di secondo livello potrebbero contenere una versione più vecchia, che farebbe fallire
+     * di nuovo il tentativo del client. refresh rilegge la riga e scarta la voce di secondo livello.
+     */
+    @Transactional(readOnly = true)
+    public VeicoloResponseDto getVeicoloCorrente(String numeroTelaio) {
+        cacheVeicoli.invalida(numeroTelaio);
+        Optional<Veicolo> veicolo = veicoloRepository.findByNumeroTelaio(numeroTelaio);
+        if (!veicolo.isPresent()) {
+            return null;
         }
-        
+        try {
+            entityManager.refresh(veicolo.get());
+        } catch (EntityNotFoundException e) {
+            // Eliminato nel frattempo
+            return null;
+        }
+        return veicoloMapper.toDto(veicolo.get());
+    }
+
+    public List<VeicoloResponseDto> searchVeicoli(String numeroTelaio, String marca, String modello,
+            Integer annoMin, Integer annoMax, Integer chilometraggioMin, Integer chilometraggioMax,
+            Boolean disponibile) {
+        // Tutti i criteri sono applicati dal database in un'unica query
+        Specification<Veicolo> spec = costruisciFiltro(numeroTelaio, marca, modello,
+                annoMin, annoMax, chilometraggioMin, chilometraggioMax, disponibile);
+
+        List<Veicolo> veicoli = veicoloRepository.findBy(spec, q -> q
+                .sortBy(Sort.by("numeroTelaio"))
+                .limit(MAX_RISULTATI_RICERCA)
+                .all());
+
+        logger.info("Ricerca veicoli completata con {} risultati", veicoli.size());
         return veicoli.stream().map(veicoloMapper::toDto).collect(Collectors.toList());
     }
 
+    public FacetVeicoliDto getFacets(String numeroTelaio, String marca, String modello,
+            Integer annoMin, Integer annoMax, Integer chilometraggioMin, Integer chilometraggioMax,
+            Boolean disponibile) {
+        // Un conteggio raggruppato per ogni facet, con lo stesso filtro della ricerca
+        Specification<Veicolo> spec = costruisciFiltro(numeroTelaio, marca, modello,
+                annoMin, annoMax, chilometraggioMin, chilometraggioMax, disponibile);
+
+        FacetVeicoliDto facets = new FacetVeicoliDto();
+        facets.setDisponibile(veicoloRepository.contaPer(spec, "disponibile"));
+        facets.setTotale(facets.getDisponibile().values().stream().mapToLong(Long::longValue).sum());
+        facets.setMarca(veicoloRepository.contaPer(spec, "marca"));
+        facets.setModello(veicoloRepository.contaPer(spec, "modello"));
+        facets.setAnnoImmatricolazione(veicoloRepository.contaPer(spec, "annoImmatricolazione"));
+        facets.setConfigurazione(veicoloRepository.contaPer(spec, "configurazione.nomeConfigurazione"));
+
+        logger.info("Facet veicoli calcolate su {} veicoli", facets.getTotale());
+        return facets;
+    }
+
+    // Il frammento di telaio è risolto dall'indice a trigrammi quando possibile
+    private Specification<Veicolo> costruisciFiltro(String numeroTelaio, String marca, String modello,
+            Integer annoMin, Integer annoMax, Integer chilometraggioMin, Integer chilometraggioMax,
+            Boolean disponibile) {
+        Specification<Veicolo> filtroTelaio = indiceTrigrammiService.cercaTelai(numeroTelaio)
+                .map(VeicoloSpecifications::telaioIn)
+                .orElseGet(() -> VeicoloSpecifications.telaioContiene(numeroTelaio));
+
+        return Specification.where(filtroTelaio)
+                .and(VeicoloSpecifications.marcaIniziaCon(marca))
+                .and(VeicoloSpecifications.modelloIniziaCon(modello))
+                .and(VeicoloSpecifications.annoTra(annoMin, annoMax))
+                .and(VeicoloSpecifications.chilometraggioTra(chilometraggioMin, chilometraggioMax))
+                .and(VeicoloSpecifications.disponibile(disponibile));
+    }
+
+    @Transactional
     public VeicoloResponseDto insert(VeicoloRequestDto veicoloRequestDto) {
         logger.debug("Tentativo di inserimento veicolo: {}", veicoloRequestDto.getNumeroTelaio());
 
@@ -103,23 +176,29 @@ public class VeicoloService {
 
         Veicolo veicolo = veicoloMapper.toEntityFromDtoRequest(veicoloRequestDto);
         
-        // Gestione dell'assegnazione della configurazione
-        Optional<Configurazione> configurazione = configurazioneRepository.findById(1);
+        // Gestione dell'assegnazione della configurazione (riferimento dalla cache, senza SELECT)
+        Optional<Configurazione> configurazione = cacheConfigurazioni.riferimentoPerId(1);
         if (configurazione.isEmpty()) {
             // Se non esiste una configurazione con ID 1, creiamo una configurazione di default
             Configurazione nuovaConfigurazione = new Configurazione();
             nuovaConfigurazione.setNomeConfigurazione("Configurazione Standard");
-            configurazione = Optional.of(configurazioneRepository.save(nuovaConfigurazione));
+            configurazione = Optional.of(configurazioneRepository.saveAndFlush(nuovaConfigurazione));
+            cacheConfigurazioni.salvata(nuovaConfigurazione, null);
+            contatoriModifiche.modificata(Tabella.CONFIGURAZIONI);
             logger.info("Creata nuova configurazione di default con ID: {}", nuovaConfigurazione.getIdConfigurazione());
         }
         
         veicolo.setConfigurazione(configurazione.get());
         veicoloRepository.save(veicolo);
+        contatoriModifiche.modificata(Tabella.VEICOLI);
+        indiceTrigrammiService.aggiungiTelaio(veicolo.getNumeroTelaio());
+        suggerimentiVeicoliService.veicoloAggiunto(veicolo.getMarca(), veicolo.getModello());
         logger.info("Veicolo con numero telaio {} inserito correttamente", veicolo.getNumeroTelaio());
 
         return veicoloMapper.toDto(veicolo);
     }
 
+    @Transactional
     public VeicoloResponseDto update(VeicoloUpdateDto veicoloUpdateDto, String numeroTelaio) {
         Optional<Veicolo> existingVeicoloOpt = veicoloRepository.findByNumeroTelaio(numeroTelaio);
         
@@ -129,15 +208,27 @@ public class VeicoloService {
         }
 
         Veicolo existingVeicolo = existingVeicoloOpt.get();
+        if (veicoloUpdateDto.getVersione() != null && veicoloUpdateDto.getVersione() != existingVeicolo.getVersione()) {
+            logger.warn("Veicolo con numero telaio {} modificato da un'altra richiesta (versione {}, attesa {})",
+                    numeroTelaio, existingVeicolo.getVersione(), veicoloUpdateDto.getVersione());
+            throw new ObjectOptimisticLockingFailureException(Veicolo.class, numeroTelaio);
+        }
+        String marcaPrecedente = existingVeicolo.getMarca();
+        String modelloPrecedente = existingVeicolo.getModello();
         veicoloMapper.updateVeicoloFromDtoRequest(veicoloUpdateDto, existingVeicolo);
 
         veicoloRepository.save(existingVeicolo);
+        cacheVeicoli.invalidaDopoCommit(numeroTelaio);
+        contatoriModifiche.modificata(Tabella.VEICOLI);
+        suggerimentiVeicoliService.veicoloRimosso(marcaPrecedente, modelloPrecedente);
+        suggerimentiVeicoliService.veicoloAggiunto(existingVeicolo.getMarca(), existingVeicolo.getModello());
 
         logger.info("Veicolo con numero telaio {} aggiornato correttamente", numeroTelaio);
 
         return veicoloMapper.toDto(existingVeicolo);
     }
     
+    @Transactional
     public boolean delete(String numeroTelaio) {
         Optional<Veicolo> existingVeicolo = veicoloRepository.findByNumeroTelaio(numeroTelaio);
         
@@ -146,7 +237,15 @@ public class VeicoloService {
             return false;
         }
         
+        // Telaio come memorizzato (può differire da quello richiesto per maiuscole e spazi finali):
+        // è la chiave del registro delle prenotazioni e dell'indice a trigrammi
+        String telaio = veicoloRepository.findNumeroTelaioMemorizzato(numeroTelaio).orElse(numeroTelaio);
         veicoloRepository.delete(existingVeicolo.get());
+        cacheVeicoli.invalidaDopoCommit(numeroTelaio);
+        contatoriModifiche.modificata(Tabella.VEICOLI);
+        prenotazioniService.veicoloNonPiuDisponibile(telaio);
+        indiceTrigrammiService.rimuoviTelaio(telaio);
+        suggerimentiVeicoliService.veicoloRimosso(existingVeicolo.get().getMarca(), existingVeicolo.get().getModello());
         logger.info("Veicolo con numero telaio {} eliminato correttamente", numeroTelaio);
         
         return true;
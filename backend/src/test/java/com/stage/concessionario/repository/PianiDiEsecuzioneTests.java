@@ -0,0 +1,138 @@
+package com.stage.concessionario.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Regressione sugli indici delle query frequenti: lo schema è generato dalle entità (quindi dagli
+ * @Index dichiarati) e per ogni percorso di accesso si verifica che esista l'indice atteso, sulla
+ * tabella giusta e con le colonne nell'ordine che la query sfrutta (uguaglianze prima, poi
+ * l'ordinamento o l'intervallo). Il piano scelto dipende dall'ottimizzatore e dai dati del
+ * database reale, quindi qui non si esegue EXPLAIN.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:piani;MODE=MySQL;DATABASE_TO_LOWER=TRUE;INIT=CREATE SCHEMA IF NOT EXISTS concessionario",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create",
+        // Lo schema non dipende dalla cache di secondo livello
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PianiDiEsecuzioneTests {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Ricerca a cursore filtrata per tipo, ordinata per (data_movimento, id_movimento) DESC
+    @Test
+    void ricercaMovimentiPerTipoInOrdineKeyset() {
+        assertIndice("movimento", "idx_movimento_tipo_data", "tipo_movimento", "data_movimento", "id_movimento");
+    }
+
+    // Ricerca a cursore senza tipo, anche con intervallo di date
+    @Test
+    void ricercaMovimentiPerIntervalloDiDate() {
+        assertIndice("movimento", "idx_movimento_data", "data_movimento", "id_movimento");
+    }
+
+    @Test
+    void movimentiPerUtenteETipo() {
+        assertIndice("movimento", "idx_movimento_utente_tipo", "codice_fiscale_utente", "tipo_movimento");
+    }
+
+    @Test
+    void movimentiPerComproprietario() {
+        assertIndice("movimento", "idx_movimento_comproprietario", "codice_fiscale_comproprietario");
+    }
+
+    @Test
+    void ultimoMovimentoDelVeicolo() {
+        assertIndice("movimento", "idx_movimento_veicolo_data", "numero_telaio", "data_movimento");
+    }
+
+    @Test
+    void movimentiPerVeicoloETipo() {
+        assertIndice("movimento", "idx_movimento_veicolo_tipo", "numero_telaio", "tipo_movimento");
+    }
+
+    // Ricerca dei veicoli disponibili per prefisso di marca e modello (colonne normalizzate)
+    @Test
+    void veicoliDisponibiliPerMarcaEModello() {
+        assertIndice("veicolo", "idx_veicolo_disp_marca_modello", "disponibile", "marca_norm", "modello_norm");
+    }
+
+    @Test
+    void veicoliPerPrefissoDiMarca() {
+        assertIndice("veicolo", "idx_veicolo_marca_modello_norm", "marca_norm", "modello_norm");
+    }
+
+    @Test
+    void veicoliPerPrefissoDiModello() {
+        assertIndice("veicolo", "idx_veicolo_modello_norm", "modello_norm");
+    }
+
+    @Test
+    void veicoliDisponibiliPerAnno() {
+        assertIndice("veicolo", "idx_veicolo_disp_anno_km", "disponibile", "anno_immatricolazione", "chilometraggio");
+    }
+
+    @Test
+    void veicoliPerConfigurazione() {
+        assertIndice("veicolo", "idx_veicolo_configurazione", "id_configurazione");
+    }
+
+    @Test
+    void utentiPerPrefissoDiCognome() {
+        assertIndice("utente", "idx_utente_cognome_norm", "cognome_norm");
+    }
+
+    @Test
+    void utentiPerPrefissoDiNome() {
+        assertIndice("utente", "idx_utente_nome_norm", "nome_norm");
+    }
+
+    @Test
+    void utentiPerPrefissoDiEmail() {
+        assertIndice("utente", "idx_utente_email_norm", "email_norm");
+    }
+
+    @Test
+    void utentePerEmail() {
+        assertIndice("utente", "idx_utente_email", "email");
+    }
+
+    @Test
+    void amministratorePerEmail() {
+        assertIndice("amministratore", "idx_amministratore_email", "email");
+    }
+
+    @Test
+    void configurazionePerNome() {
+        assertIndice("configurazione", "idx_configurazione_nome", "nome_configurazione");
+    }
+
+    private void assertIndice(String tabella, String indice, String... colonne) {
+        @SuppressWarnings("unchecked")
+        List<Object> trovate = entityManager.createNativeQuery("SELECT column_name FROM information_schema.index_columns "
+                        + "WHERE table_name = :tabella AND index_name = :indice ORDER BY ordinal_position")
+                .setParameter("tabella", tabella)
+                .setParameter("indice", indice)
+                .getResultList();
+        assertThat(trovate).as("colonne dell'indice %s su %s", indice, tabella)
+                .extracting(colonna -> colonna.toString().toLowerCase(Locale.ROOT))
+                .containsExactly(colonne);
+    }
+}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { 
   Typography, 
   Paper, 
@@ -26,7 +26,8 @@ import {
   Chip,
   Autocomplete,
   Checkbox,
-  FormControlLabel
+  FormControlLabel,
+  TablePagination
 } from '@mui/material';
 import CommonButton from '../common/CommonButton';
 import { 
@@ -75,11 +76,23 @@ const MovimentoSchema = Yup.object().shape({
 const MovimentiPage = () => {
   const navigate = useNavigate();
   const [movimenti, setMovimenti] = useState([]);
-  const [utenti, setUtenti] = useState([]);
-  const [veicoli, setVeicoli] = useState([]);
+  // Pagina del server mostrata (0-based) e totale dei movimenti dell'elenco
+  const [pagina, setPagina] = useState(0);
+  const [totaleMovimenti, setTotaleMovimenti] = useState(0);
+  // Ricerca a cursore: filtri applicati (null fuori dalla ricerca), cursori delle pagine già viste
+  // (l'ultimo è quello della pagina mostrata) e cursore della pagina successiva
+  const [filtriRicerca, setFiltriRicerca] = useState(null);
+  const [cursoriRicerca, setCursoriRicerca] = useState([null]);
+  const [prossimoCursore, setProssimoCursore] = useState(null);
+  // Opzioni dei campi di selezione, dalle ricerche limitate del server mentre si digita
+  const [opzioniUtenti, setOpzioniUtenti] = useState([]);
+  const [opzioniVeicoli, setOpzioniVeicoli] = useState([]);
+  const attesaRicerca = useRef(null);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
   const [openAddDialog, setOpenAddDialog] = useState(false);
+  // Idempotency-Key dell'invio in corso del form di creazione: nuova a ogni apertura del form
+  const chiaveCreazione = useRef(null);
   const [openViewDialog, setOpenViewDialog] = useState(false);
   const [openSearchDialog, setOpenSearchDialog] = useState(false);
   const [selectedMovimento, setSelectedMovimento] = useState(null);
@@ -90,16 +103,17 @@ const MovimentiPage = () => {
   });
 
   useEffect(() => {
-    fetchMovimenti();
-    fetchUtenti();
-    fetchVeicoli();
+    fetchMovimenti(0);
   }, []);
 
-  const fetchMovimenti = async () => {
+  const fetchMovimenti = async (numeroPagina = pagina) => {
     try {
       setLoading(true);
-      const data = await apiService.getMovimenti();
-      setMovimenti(data);
+      const data = await apiService.getMovimenti(numeroPagina);
+      setMovimenti(data.content);
+      setPagina(data.page);
+      setTotaleMovimenti(data.totalElements);
+      setFiltriRicerca(null);
       setError(null);
     } catch (err) {
       console.error('Errore durante il recupero dei movimenti:', err);
@@ -109,25 +123,54 @@ const MovimentiPage = () => {
     }
   };
 
-  const fetchUtenti = async () => {
+  // Carica la pagina della ricerca indicata dall'ultimo cursore della pila
+  const caricaRicerca = async (filtri, cursori) => {
+    const data = await apiService.searchMovimenti(filtri, cursori[cursori.length - 1]);
+    setMovimenti(data.content);
+    setFiltriRicerca(filtri);
+    setCursoriRicerca(cursori);
+    setProssimoCursore(data.hasNext ? data.nextCursor : null);
+  };
+
+  const cambiaPaginaRicerca = async (cursori) => {
     try {
-      const data = await apiService.getUtenti();
-      setUtenti(data);
+      setLoading(true);
+      await caricaRicerca(filtriRicerca, cursori);
     } catch (err) {
-      console.error('Errore durante il recupero degli utenti:', err);
+      console.error('Errore durante la ricerca dei movimenti:', err);
+      setSnackbar({
+        open: true,
+        message: 'Errore durante la ricerca dei movimenti',
+        severity: 'error'
+      });
+    } finally {
+      setLoading(false);
     }
   };
 
-  const fetchVeicoli = async () => {
-    try {
-      const data = await apiService.getVeicoli();
-      setVeicoli(data);
-    } catch (err) {
-      console.error('Errore durante il recupero dei veicoli:', err);
-      setVeicoli([]);
+  // Le ricerche partono dopo una breve pausa nella digitazione e solo da due caratteri in su
+  const cercaOpzioni = (testo, cerca, imposta) => {
+    clearTimeout(attesaRicerca.current);
+    if (testo.trim().length < 2) {
+      imposta([]);
+      return;
     }
+    attesaRicerca.current = setTimeout(async () => {
+      try {
+        imposta(await cerca(testo.trim()));
+      } catch (err) {
+        console.error('Errore durante la ricerca delle opzioni:', err);
+        imposta([]);
+      }
+    }, 300);
   };
 
+  const cercaUtenti = (testo) =>
+    cercaOpzioni(testo, (cognome) => apiService.searchUtenti({ cognome }), setOpzioniUtenti);
+
+  const cercaVeicoli = (testo) =>
+    cercaOpzioni(testo, (numeroTelaio) => apiService.searchVeicoli({ numeroTelaio }), setOpzioniVeicoli);
+
   const handleAddMovimento = async (values, { resetForm }) => {
     try {
       console.log('Valori del form:', values); // Log dei valori del form
@@ -155,7 +198,10 @@ const MovimentiPage = () => {
         throw new Error('Campi obbligatori mancanti');
       }
 
-      const response = await apiService.createMovimento(movimentoData);
+      // Stessa chiave per i nuovi invii finché l'esito del precedente è incerto
+      chiaveCreazione.current = chiaveCreazione.current || apiService.nuovaChiaveIdempotenza();
+      const response = await apiService.createMovimento(movimentoData, chiaveCreazione.current);
+      chiaveCreazione.current = null;
       console.log('Risposta API:', response); // Log della risposta
       
       if (!response) {
@@ -172,6 +218,9 @@ const MovimentiPage = () => {
       });
     } catch (err) {
       console.error('Errore durante l\'aggiunta del movimento:', err);
+      if (!apiService.esitoIncerto(err)) {
+        chiaveCreazione.current = null;
+      }
       console.error('Dettagli errore:', {
         status: err.response?.status,
         statusText: err.response?.statusText,
@@ -180,7 +229,9 @@ const MovimentiPage = () => {
       });
       setSnackbar({
         open: true,
-        message: err.response?.data || err.message || 'Errore durante l\'aggiunta del movimento',
+        message: err.response?.status === 409
+          ? 'Il veicolo non è più disponibile per la vendita'
+          : err.response?.data || err.message || 'Errore durante l\'aggiunta del movimento',
         severity: 'error'
       });
     }
@@ -190,7 +241,7 @@ const MovimentiPage = () => {
     console.log('Valori del form di ricerca:', values);
     const params = {};
     if (values.codiceFiscaleUtente) {
-      params.codiceFiscale = values.codiceFiscaleUtente;
+      params.codiceFiscaleUtente = values.codiceFiscaleUtente;
     }
     if (values.numeroTelaio) {
       params.numeroTelaio = values.numeroTelaio;
@@ -200,10 +251,9 @@ const MovimentiPage = () => {
     try {
       setLoading(true);
       if (Object.keys(params).length > 0) {
-        const data = await apiService.searchMovimenti(params);
-        setMovimenti(data);
+        await caricaRicerca(params, [null]);
       } else {
-        await fetchMovimenti();
+        await fetchMovimenti(0);
       }
       setOpenSearchDialog(false);
     } catch (err) {
@@ -228,7 +278,7 @@ const MovimentiPage = () => {
   };
 
   const resetSearch = () => {
-    fetchMovimenti();
+    fetchMovimenti(0);
   };
 
   const formatCurrency = (amount) => {
@@ -265,7 +315,10 @@ const MovimentiPage = () => {
               variant="contained"
               color="primary"
               startIcon={<AddIcon />}
-              onClick={() => setOpenAddDialog(true)}
+              onClick={() => {
+                chiaveCreazione.current = null;
+                setOpenAddDialog(true);
+              }}
               sx={{ mr: 2 }}
             >
               Nuovo Movimento
@@ -375,6 +428,35 @@ const MovimentiPage = () => {
                 )}
               </TableBody>
             </Table>
+            {filtriRicerca ? (
+              <Box display="flex" justifyContent="flex-end" alignItems="center" mt={2}>
+                <CommonButton
+                  variant="outlined"
+                  disabled={cursoriRicerca.length < 2}
+                  onClick={() => cambiaPaginaRicerca(cursoriRicerca.slice(0, -1))}
+                  sx={{ mr: 2 }}
+                >
+                  Precedenti
+                </CommonButton>
+                <CommonButton
+                  variant="outlined"
+                  disabled={!prossimoCursore}
+                  onClick={() => cambiaPaginaRicerca([...cursoriRicerca, prossimoCursore])}
+                >
+                  Successivi
+                </CommonButton>
+              </Box>
+            ) : (
+              <TablePagination
+                component="div"
+                count={totaleMovimenti}
+                page={pagina}
+                rowsPerPage={apiService.DIMENSIONE_PAGINA}
+                rowsPerPageOptions={[]}
+                onPageChange={(event, nuovaPagina) => fetchMovimenti(nuovaPagina)}
+                labelDisplayedRows={({ from, to, count }) => `${from}-${to} di ${count}`}
+              />
+            )}
           </TableContainer>
         )}
       </Paper>
@@ -395,7 +477,10 @@ const MovimentiPage = () => {
             numeroTelaio: '',
             importo: '',
             hasComproprietario: false,
-            codiceFiscaleComproprietario: ''
+            codiceFiscaleComproprietario: '',
+            cliente: null,
+            comproprietario: null,
+            veicolo: null
           }}
           validationSchema={MovimentoSchema}
           onSubmit={handleAddMovimento}
@@ -440,15 +525,20 @@ const MovimentiPage = () => {
                 
                 <Box sx={{ mb: 2 }}>
                   <Autocomplete
-                    options={utenti}
+                    options={opzioniUtenti}
+                    filterOptions={(options) => options}
                     getOptionLabel={(option) => {
                       if (!option) return '';
                       return `${option.nome} ${option.cognome} (${option.codiceFiscaleUtente})`;
                     }}
-                    value={utenti.find((u) => u.codiceFiscaleUtente === values.codiceFiscaleUtente) || null}
+                    isOptionEqualToValue={(option, value) => option.codiceFiscaleUtente === value.codiceFiscaleUtente}
+                    value={values.cliente}
+                    onInputChange={(_, testo, motivo) => motivo === 'input' && cercaUtenti(testo)}
                     onChange={(_, value) => {
+                      setFieldValue('cliente', value);
                       setFieldValue('codiceFiscaleUtente', value ? value.codiceFiscaleUtente : '');
                     }}
+                    noOptionsText="Digita almeno due lettere del cognome"
                     renderInput={(params) => (
                       <TextField
                         {...params}
@@ -478,15 +568,20 @@ const MovimentiPage = () => {
                 {values.hasComproprietario && (
                   <Box sx={{ mb: 2 }}>
                     <Autocomplete
-                      options={utenti.filter(u => u.codiceFiscaleUtente !== values.codiceFiscaleUtente)}
+                      options={opzioniUtenti.filter(u => u.codiceFiscaleUtente !== values.codiceFiscaleUtente)}
+                      filterOptions={(options) => options}
                       getOptionLabel={(option) => {
                         if (!option) return '';
                         return `${option.nome} ${option.cognome} (${option.codiceFiscaleUtente})`;
                       }}
-                      value={utenti.find((u) => u.codiceFiscaleUtente === values.codiceFiscaleComproprietario) || null}
+                      isOptionEqualToValue={(option, value) => option.codiceFiscaleUtente === value.codiceFiscaleUtente}
+                      value={values.comproprietario}
+                      onInputChange={(_, testo, motivo) => motivo === 'input' && cercaUtenti(testo)}
                       onChange={(_, value) => {
+                        setFieldValue('comproprietario', value);
                         setFieldValue('codiceFiscaleComproprietario', value ? value.codiceFiscaleUtente : '');
                       }}
+                      noOptionsText="Digita almeno due lettere del cognome"
                       renderInput={(params) => (
                         <TextField
                           {...params}
@@ -502,12 +597,17 @@ const MovimentiPage = () => {
                 
                 <Box sx={{ mb: 2 }}>
                   <Autocomplete
-                    options={veicoli}
+                    options={opzioniVeicoli}
+                    filterOptions={(options) => options}
                     getOptionLabel={(option) => `${option.marca} ${option.modello} (${option.numeroTelaio})`}
-                    value={veicoli.find((v) => v.numeroTelaio === values.numeroTelaio) || null}
+                    isOptionEqualToValue={(option, value) => option.numeroTelaio === value.numeroTelaio}
+                    value={values.veicolo}
+                    onInputChange={(_, testo, motivo) => motivo === 'input' && cercaVeicoli(testo)}
                     onChange={(_, value) => {
+                      setFieldValue('veicolo', value);
                       setFieldValue('numeroTelaio', value ? value.numeroTelaio : '');
                     }}
+                    noOptionsText="Digita almeno due caratteri del telaio"
                     renderInput={(params) => (
                       <TextField
                         {...params}
@@ -637,15 +737,18 @@ const MovimentiPage = () => {
                 <Grid container spacing={3}>
                   <Grid item xs={12} md={6} sx={{ minWidth: 250, maxWidth: '100%' }}>
                     <Autocomplete
-                      options={utenti}
+                      options={opzioniUtenti}
+                      filterOptions={(options) => options}
                       getOptionLabel={(option) => {
                         if (!option) return '';
-                        const nomeCompleto = `${option.nome} ${option.cognome}`;
-                        return option.codiceFiscale ? `${nomeCompleto} (${option.codiceFiscale})` : nomeCompleto;
+                        return `${option.nome} ${option.cognome} (${option.codiceFiscaleUtente})`;
                       }}
+                      isOptionEqualToValue={(option, value) => option.codiceFiscaleUtente === value.codiceFiscaleUtente}
+                      onInputChange={(_, testo, motivo) => motivo === 'input' && cercaUtenti(testo)}
                       onChange={(_, value) => {
-                        setFieldValue('codiceFiscaleUtente', value ? value.codiceFiscale : '');
+                        setFieldValue('codiceFiscaleUtente', value ? value.codiceFiscaleUtente : '');
                       }}
+                      noOptionsText="Digita almeno due lettere del cognome"
                       renderInput={(params) => (
                         <TextField
                           {...params}
@@ -662,11 +765,15 @@ const MovimentiPage = () => {
                   </Grid>
                   <Grid item xs={12} md={6} sx={{ minWidth: 250, maxWidth: '100%' }}>
                     <Autocomplete
-                      options={veicoli}
+                      options={opzioniVeicoli}
+                      filterOptions={(options) => options}
                       getOptionLabel={(option) => `${option.marca} ${option.modello} (${option.numeroTelaio})`}
+                      isOptionEqualToValue={(option, value) => option.numeroTelaio === value.numeroTelaio}
+                      onInputChange={(_, testo, motivo) => motivo === 'input' && cercaVeicoli(testo)}
                       onChange={(_, value) => {
                         setFieldValue('numeroTelaio', value ? value.numeroTelaio : '');
                       }}
+                      noOptionsText="Digita almeno due caratteri del telaio"
                       renderInput={(params) => (
                         <TextField
                           {...params}
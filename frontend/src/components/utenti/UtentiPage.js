@@ -16,7 +16,8 @@ import {
   CardContent,
   CardActions,
   Avatar,
-  Chip
+  Chip,
+  Pagination
 } from '@mui/material';
 import CommonButton from '../common/CommonButton';
 import { 
@@ -58,6 +59,10 @@ const UtenteSchema = Yup.object().shape({
 
 const UtentiPage = () => {
   const [utenti, setUtenti] = useState([]);
+  // Pagina del server mostrata (0-based) e numero di pagine; durante una ricerca la paginazione è nascosta
+  const [pagina, setPagina] = useState(0);
+  const [totalePagine, setTotalePagine] = useState(0);
+  const [ricercaAttiva, setRicercaAttiva] = useState(false);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
   const [openAddDialog, setOpenAddDialog] = useState(false);
@@ -71,14 +76,17 @@ const UtentiPage = () => {
   });
 
   useEffect(() => {
-    fetchUtenti();
+    fetchUtenti(0);
   }, []);
 
-  const fetchUtenti = async () => {
+  const fetchUtenti = async (numeroPagina = pagina) => {
     try {
       setLoading(true);
-      const data = await apiService.getUtenti();
-      setUtenti(data);
+      const data = await apiService.getUtenti(numeroPagina);
+      setUtenti(data.content);
+      setPagina(data.page);
+      setTotalePagine(data.totalPages);
+      setRicercaAttiva(false);
       setError(null);
     } catch (err) {
       console.error('Errore durante il recupero degli utenti:', err);
@@ -154,7 +162,9 @@ const UtentiPage = () => {
       console.error('Errore durante l\'aggiornamento dell\'utente:', err);
       setSnackbar({
         open: true,
-        message: err.response?.data || 'Errore durante l\'aggiornamento dell\'utente',
+        message: err.response?.status === 409
+          ? 'L\'utente è stato modificato da un altro utente: ricarica e riprova'
+          : err.response?.data || 'Errore durante l\'aggiornamento dell\'utente',
         severity: 'error'
       });
     }
@@ -170,6 +180,7 @@ const UtentiPage = () => {
       
       const data = await apiService.searchUtenti(searchParams);
       setUtenti(data);
+      setRicercaAttiva(true);
       setOpenSearchDialog(false);
     } catch (err) {
       console.error('Errore durante la ricerca degli utenti:', err);
@@ -193,7 +204,7 @@ const UtentiPage = () => {
   };
 
   const resetSearch = () => {
-    fetchUtenti();
+    fetchUtenti(0);
   };
 
   const containerVariants = {
@@ -416,6 +427,17 @@ const UtentiPage = () => {
             </AnimatePresence>
           </Grid>
         )}
+
+        {!loading && !error && !ricercaAttiva && totalePagine > 1 && (
+          <Box display="flex" justifyContent="center" mt={3}>
+            <Pagination
+              count={totalePagine}
+              page={pagina + 1}
+              onChange={(event, nuovaPagina) => fetchUtenti(nuovaPagina - 1)}
+              color="primary"
+            />
+          </Box>
+        )}
       </Paper>
 
       {/* Dialog per aggiungere un nuovo utente */}
@@ -557,7 +579,8 @@ const UtentiPage = () => {
   telefono: selectedUtente.telefono || '',
   email: selectedUtente.email || '',
   indirizzo: selectedUtente.indirizzo || '',
-  dataNascita: selectedUtente.dataNascita ? selectedUtente.dataNascita.substring(0, 10) : ''
+  dataNascita: selectedUtente.dataNascita ? selectedUtente.dataNascita.substring(0, 10) : '',
+  versione: selectedUtente.versione
 }}
             validationSchema={UtenteSchema}
             onSubmit={handleEditUtente}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { 
   Typography, 
   Paper, 
@@ -23,7 +23,8 @@ import {
   FormControl,
   InputLabel,
   Select,
-  Chip
+  Chip,
+  TablePagination
 } from '@mui/material';
 import CommonButton from '../common/CommonButton';
 import { 
@@ -57,9 +58,15 @@ const VeicoloSchema = Yup.object().shape({
 
 const VeicoliPage = () => {
   const [veicoli, setVeicoli] = useState([]);
+  // Pagina del server mostrata (0-based) e totale dei veicoli; durante una ricerca la paginazione è nascosta
+  const [pagina, setPagina] = useState(0);
+  const [totaleVeicoli, setTotaleVeicoli] = useState(0);
+  const [ricercaAttiva, setRicercaAttiva] = useState(false);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
   const [openAddDialog, setOpenAddDialog] = useState(false);
+  // Idempotency-Key dell'invio in corso del form di creazione: nuova a ogni apertura del form
+  const chiaveCreazione = useRef(null);
   const [openEditDialog, setOpenEditDialog] = useState(false);
   const [openSearchDialog, setOpenSearchDialog] = useState(false);
   const [selectedVeicolo, setSelectedVeicolo] = useState(null);
@@ -70,15 +77,15 @@ const VeicoliPage = () => {
   });
 
   useEffect(() => {
-    fetchVeicoli();
+    fetchVeicoli(0);
   }, []);
 
-  const fetchVeicoli = async () => {
+  const fetchVeicoli = async (numeroPagina = pagina) => {
     try {
       setLoading(true);
       let data;
       try {
-        data = await apiService.getVeicoli();
+        data = await apiService.getVeicoli(numeroPagina);
       } catch (err) {
         if (err.response && err.response.status === 404) {
           setError('Endpoint /veicoli non trovato. Verifica che il backend sia attivo.');
@@ -88,7 +95,10 @@ const VeicoliPage = () => {
           throw err;
         }
       }
-      setVeicoli(data);
+      setVeicoli(data.content);
+      setPagina(data.page);
+      setTotaleVeicoli(data.totalElements);
+      setRicercaAttiva(false);
       setError(null);
     } catch (err) {
       console.error('Errore durante il recupero dei veicoli:', err);
@@ -101,7 +111,10 @@ const VeicoliPage = () => {
 
   const handleAddVeicolo = async (values, { resetForm }) => {
     try {
-      await apiService.createVeicolo(values);
+      // Stessa chiave per i nuovi invii finché l'esito del precedente è incerto
+      chiaveCreazione.current = chiaveCreazione.current || apiService.nuovaChiaveIdempotenza();
+      await apiService.createVeicolo(values, chiaveCreazione.current);
+      chiaveCreazione.current = null;
       resetForm();
       setOpenAddDialog(false);
       fetchVeicoli();
@@ -112,6 +125,9 @@ const VeicoliPage = () => {
       });
     } catch (err) {
       console.error('Errore durante l\'aggiunta del veicolo:', err);
+      if (!apiService.esitoIncerto(err)) {
+        chiaveCreazione.current = null;
+      }
       setSnackbar({
         open: true,
         message: 'Errore durante l\'aggiunta del veicolo',
@@ -134,7 +150,9 @@ const VeicoliPage = () => {
       console.error('Errore durante l\'aggiornamento del veicolo:', err);
       setSnackbar({
         open: true,
-        message: 'Errore durante l\'aggiornamento del veicolo',
+        message: err.response?.status === 409
+          ? 'Il veicolo è stato modificato da un altro utente: ricarica e riprova'
+          : 'Errore durante l\'aggiornamento del veicolo',
         severity: 'error'
       });
     }
@@ -156,6 +174,7 @@ const VeicoliPage = () => {
       });
       const data = await apiService.searchVeicoli(searchParams);
       setVeicoli(data);
+      setRicercaAttiva(true);
       setOpenSearchDialog(false);
     } catch (err) {
       console.error('Errore durante la ricerca dei veicoli:', err);
@@ -179,7 +198,7 @@ const VeicoliPage = () => {
   };
 
   const resetSearch = () => {
-    fetchVeicoli();
+    fetchVeicoli(0);
   };
 
   return (
@@ -201,7 +220,10 @@ const VeicoliPage = () => {
               variant="contained"
               color="primary"
               startIcon={<AddIcon />}
-              onClick={() => setOpenAddDialog(true)}
+              onClick={() => {
+                chiaveCreazione.current = null;
+                setOpenAddDialog(true);
+              }}
               sx={{ mr: 2 }}
             >
               Nuovo Veicolo
@@ -280,6 +302,17 @@ const VeicoliPage = () => {
                 )}
               </TableBody>
             </Table>
+            {!ricercaAttiva && (
+              <TablePagination
+                component="div"
+                count={totaleVeicoli}
+                page={pagina}
+                rowsPerPage={apiService.DIMENSIONE_PAGINA}
+                rowsPerPageOptions={[]}
+                onPageChange={(event, nuovaPagina) => fetchVeicoli(nuovaPagina)}
+                labelDisplayedRows={({ from, to, count }) => `${from}-${to} di ${count}`}
+              />
+            )}
           </TableContainer>
         )}
       </Paper>
@@ -402,7 +435,8 @@ const VeicoliPage = () => {
               modello: selectedVeicolo.modello,
 
               annoImmatricolazione: selectedVeicolo.annoImmatricolazione,
-              disponibile: selectedVeicolo.disponibile
+              disponibile: selectedVeicolo.disponibile,
+              versione: selectedVeicolo.versione
             }}
             validationSchema={VeicoloSchema}
             onSubmit={handleEditVeicolo}
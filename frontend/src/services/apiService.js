@@ -1,7 +1,55 @@
 import axios from 'axios';
+import authService from './authService';
 
 const API_BASE_URL = 'http://localhost:8080/api';
 
+// Gli elenchi sono paginati lato server: le pagine React chiedono e mostrano una pagina alla volta
+// ({ content, page, size, totalElements, totalPages }); la ricerca dei movimenti usa un cursore
+const DIMENSIONE_PAGINA = 20;
+
+// Chiave Idempotency-Key (UUID v4). crypto.randomUUID esiste solo nei contesti sicuri (HTTPS o
+// localhost): altrove l'UUID è composto da byte casuali di crypto.getRandomValues
+const nuovaChiaveIdempotenza = () => {
+  if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+    return window.crypto.randomUUID();
+  }
+  const byte = new Uint8Array(16);
+  if (window.crypto && typeof window.crypto.getRandomValues === 'function') {
+    window.crypto.getRandomValues(byte);
+  } else {
+    for (let i = 0; i < byte.length; i++) {
+      byte[i] = Math.floor(Math.random() * 256);
+    }
+  }
+  byte[6] = (byte[6] & 0x0f) | 0x40;
+  byte[8] = (byte[8] & 0x3f) | 0x80;
+  const hex = Array.from(byte, b => b.toString(16).padStart(2, '0')).join('');
+  return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+};
+
+// Una creazione con chiave può essere ripetuta senza creare duplicati: il server restituisce la prima
+// risposta. Se la richiesta non riceve risposta (errore di rete o timeout) viene ritentata con la stessa
+// chiave; il chiamante riusa la chiave anche per i nuovi invii del form finché l'esito resta incerto
+const TENTATIVI_CREAZIONE = 3;
+
+const postIdempotente = async (url, body, chiave) => {
+  for (let tentativo = 1; ; tentativo++) {
+    try {
+      return await axios.post(url, body, { headers: { 'Idempotency-Key': chiave } });
+    } catch (error) {
+      if (error.response || tentativo >= TENTATIVI_CREAZIONE) {
+        throw error;
+      }
+      await new Promise(resolve => setTimeout(resolve, 500 * tentativo));
+    }
+  }
+};
+
+// Dopo un errore la chiave va conservata solo se l'esito è incerto: nessuna risposta o errore del server
+// (le risposte 5xx non sono memorizzate). Le altre risposte sono definitive e un nuovo invio, magari
+// con dati corretti, richiede una nuova chiave
+const esitoIncerto = (error) => !error.response || error.response.status >= 500;
+
 // Configura axios per gestire CORS e errori
 axios.defaults.withCredentials = true;
 axios.defaults.headers.common['Content-Type'] = 'application/json';
@@ -37,12 +85,22 @@ axios.interceptors.response.use(
     });
     return response;
   },
-  error => {
+  async error => {
     console.error('Errore nella risposta:', {
       message: error.message,
       response: error.response,
       config: error.config
     });
+    // Token di accesso scaduto: si rinnova una sola volta e si ripete la richiesta
+    const config = error.config;
+    if (error.response?.status === 401 && config && !config._retry && !config.url.includes('/auth/')) {
+      config._retry = true;
+      const token = await authService.refresh();
+      if (token) {
+        config.headers['Authorization'] = `Bearer ${token}`;
+        return axios(config);
+      }
+    }
     return Promise.reject(error);
   }
 );
@@ -58,11 +116,9 @@ const searchUtenti = async (params) => {
   }
 };
 
-const getUtenti = async () => {
+const getUtenti = async (page = 0, size = DIMENSIONE_PAGINA) => {
   try {
-    console.log('Recupero utenti dal database...');
-    const response = await axios.get(`${API_BASE_URL}/utenti`);
-    console.log('Risposta dal server:', response.data);
+    const response = await axios.get(`${API_BASE_URL}/utenti`, { params: { page, size } });
     return response.data;
   } catch (error) {
     console.error('Errore durante il recupero degli utenti:', error);
@@ -129,9 +185,9 @@ const searchVeicoli = async (params) => {
   }
 };
 
-const getVeicoli = async () => {
+const getVeicoli = async (page = 0, size = DIMENSIONE_PAGINA) => {
   try {
-    const response = await axios.get(`${API_BASE_URL}/veicoli`);
+    const response = await axios.get(`${API_BASE_URL}/veicoli`, { params: { page, size } });
     return response.data;
   } catch (error) {
     console.error('Errore durante il recupero dei veicoli:', error);
@@ -159,9 +215,9 @@ const getVeicolo = async (id) => {
   }
 };
 
-const createVeicolo = async (veicolo) => {
+const createVeicolo = async (veicolo, chiave = nuovaChiaveIdempotenza()) => {
   try {
-    const response = await axios.post(`${API_BASE_URL}/veicoli`, veicolo);
+    const response = await postIdempotente(`${API_BASE_URL}/veicoli`, veicolo, chiave);
     return response.data;
   } catch (error) {
     console.error('Errore durante la creazione del veicolo:', error);
@@ -190,9 +246,13 @@ const deleteVeicolo = async (id) => {
 };
 
 // Gestione dei movimenti
-const searchMovimenti = async (params) => {
+// Ricerca con paginazione a cursore: restituisce { content, size, hasNext, nextCursor }; per la pagina
+// successiva si ripassa nextCursor con gli stessi filtri
+const searchMovimenti = async (params, cursor = null, size = DIMENSIONE_PAGINA) => {
   try {
-    const response = await axios.get(`${API_BASE_URL}/movimenti`, { params });
+    const response = await axios.get(`${API_BASE_URL}/movimenti/search`, {
+      params: cursor ? { ...params, cursor, size } : { ...params, size }
+    });
     return response.data;
   } catch (error) {
     console.error('Errore durante la ricerca dei movimenti:', error);
@@ -200,9 +260,9 @@ const searchMovimenti = async (params) => {
   }
 };
 
-const getMovimenti = async () => {
+const getMovimenti = async (page = 0, size = DIMENSIONE_PAGINA) => {
   try {
-    const response = await axios.get(`${API_BASE_URL}/movimenti`);
+    const response = await axios.get(`${API_BASE_URL}/movimenti`, { params: { page, size } });
     return response.data;
   } catch (error) {
     console.error('Errore durante il recupero dei movimenti:', error);
@@ -220,10 +280,10 @@ const getMovimento = async (id) => {
   }
 };
 
-const createMovimento = async (movimento) => {
+const createMovimento = async (movimento, chiave = nuovaChiaveIdempotenza()) => {
   try {
     console.log('Invio richiesta POST a /api/movimenti con dati:', movimento);
-    const response = await axios.post(`${API_BASE_URL}/movimenti`, movimento);
+    const response = await postIdempotente(`${API_BASE_URL}/movimenti`, movimento, chiave);
     console.log('Risposta ricevuta:', response.data);
     return response.data;
   } catch (error) {
@@ -310,7 +370,14 @@ const apiService = {
   
   // Configurazioni
   getConfigurazioni,
-  updateConfigurazioni
+  updateConfigurazioni,
+
+  // Idempotenza delle creazioni
+  nuovaChiaveIdempotenza,
+  esitoIncerto,
+
+  // Paginazione
+  DIMENSIONE_PAGINA
 };
 
 export default apiService;
@@ -9,6 +9,7 @@ const login = async (email, password) => {
     
     if (response.data.success) {
       localStorage.setItem('token', response.data.token);
+      localStorage.setItem('refreshToken', response.data.refreshToken);
       return response.data;
     } else {
       return {
@@ -42,8 +43,27 @@ const login = async (email, password) => {
   }
 };
 
+// Rinnova il token di accesso scaduto usando il refresh token
+const refresh = async () => {
+  const refreshToken = localStorage.getItem('refreshToken');
+  if (!refreshToken) {
+    return null;
+  }
+  try {
+    const response = await axios.post(`${API_URL}/refresh`, { refreshToken });
+    localStorage.setItem('token', response.data.token);
+    localStorage.setItem('refreshToken', response.data.refreshToken);
+    return response.data.token;
+  } catch (error) {
+    localStorage.removeItem('token');
+    localStorage.removeItem('refreshToken');
+    return null;
+  }
+};
+
 const authService = {
-  login
+  login,
+  refresh
 };
 
 export default authService;